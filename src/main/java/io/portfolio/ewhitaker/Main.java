@@ -4,5 +4,7 @@ public interface Main {
     static int EXIT_OK = 0;
     static int EXIT_USAGE = 64;
     static int EXIT_DATA_ERROR = 65;
+    static int EXIT_NO_INPUT = 66;
+    static int EXIT_UNAVAILABLE = 69;
     static int EXIT_SOFTWARE = 65;
 }
@@ -0,0 +1,228 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads back what AstWriter wrote, over the same source, as a tree that is ready to run. Global bindings are looked up
+// by name, since global indices differ from one engine to the next.
+public class AstReader {
+    public final ByteBuffer in;
+    public final Source source;
+    public final SymbolTable symbols;
+    public int start = 0;
+    public int line = 0;
+
+    public AstReader(ByteBuffer in, Source source, SymbolTable symbols) {
+        this.in = in;
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    public List<Stmt> read() throws IOException {
+        try {
+            return this.statements();
+        } catch (BufferUnderflowException error) {
+            throw new IOException("Truncated tree.", error);
+        }
+    }
+
+    public List<Stmt> statements() throws IOException {
+        int count = this.integer();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            statements.add(this.statement());
+        }
+        return statements;
+    }
+
+    public Stmt statement() throws IOException {
+        byte tag = this.in.get();
+        switch (tag) {
+            case AstWriter.NULL -> {
+                return null;
+            }
+            case AstWriter.BLOCK -> {
+                List<Stmt> statements = this.statements();
+                Scope scope = new Scope();
+                scope.inline = this.in.get() == AstWriter.TRUE;
+                scope.base = this.integer();
+                scope.size = this.integer();
+                return new Stmt.Block(statements, scope);
+            }
+            case AstWriter.CLASS -> {
+                Token name = this.token();
+                Expr.Variable superclass = (Expr.Variable) this.expression();
+                int count = this.integer();
+                List<Stmt.Function> methods = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i) {
+                    methods.add((Stmt.Function) this.statement());
+                }
+                return new Stmt.Class(name, superclass, methods);
+            }
+            case AstWriter.EXPRESSION -> {
+                return new Stmt.Expression(this.expression());
+            }
+            case AstWriter.FUNCTION -> {
+                Token name = this.token();
+                int count = this.integer();
+                List<Token> params = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i) {
+                    params.add(this.token());
+                }
+                return new Stmt.Function(name, params, this.statements());
+            }
+            case AstWriter.IF -> {
+                Expr condition = this.expression();
+                Stmt thenBranch = this.statement();
+                return new Stmt.If(condition, thenBranch, this.statement());
+            }
+            case AstWriter.PRINT -> {
+                return new Stmt.Print(this.expression());
+            }
+            case AstWriter.RETURN -> {
+                Token keyword = this.token();
+                return new Stmt.Return(keyword, this.expression());
+            }
+            case AstWriter.VAR -> {
+                Token name = this.token();
+                return new Stmt.Var(name, this.expression());
+            }
+            case AstWriter.WHILE -> {
+                Expr condition = this.expression();
+                return new Stmt.While(condition, this.statement());
+            }
+            default -> throw new IOException("Unknown statement tag " + tag + ".");
+        }
+    }
+
+    public Expr expression() throws IOException {
+        byte tag = this.in.get();
+        switch (tag) {
+            case AstWriter.NULL -> {
+                return null;
+            }
+            case AstWriter.ASSIGN -> {
+                Token name = this.token();
+                Expr value = this.expression();
+                return new Expr.Assign(name, value, this.binding());
+            }
+            case AstWriter.BINARY -> {
+                Expr left = this.expression();
+                Token operator = this.token();
+                return new Expr.Binary(left, operator, this.expression());
+            }
+            case AstWriter.CALL -> {
+                Expr callee = this.expression();
+                Token paren = this.token();
+                int count = this.integer();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i) {
+                    arguments.add(this.expression());
+                }
+                return new Expr.Call(callee, paren, arguments);
+            }
+            case AstWriter.GET -> {
+                Expr object = this.expression();
+                return new Expr.Get(object, this.token(), new InlineCache());
+            }
+            case AstWriter.GROUPING -> {
+                return new Expr.Grouping(this.expression());
+            }
+            case AstWriter.LITERAL -> {
+                return new Expr.Literal(this.value());
+            }
+            case AstWriter.LOGICAL -> {
+                Expr left = this.expression();
+                Token operator = this.token();
+                return new Expr.Logical(left, operator, this.expression());
+            }
+            case AstWriter.SET -> {
+                Expr object = this.expression();
+                Token name = this.token();
+                return new Expr.Set(object, name, this.expression(), new InlineCache());
+            }
+            case AstWriter.SUPER -> {
+                Token keyword = this.token();
+                Token method = this.token();
+                return new Expr.Super(keyword, method, this.binding(), new InlineCache());
+            }
+            case AstWriter.THIS -> {
+                Token keyword = this.token();
+                return new Expr.This(keyword, this.binding());
+            }
+            case AstWriter.UNARY -> {
+                Token operator = this.token();
+                return new Expr.Unary(operator, this.expression());
+            }
+            case AstWriter.VARIABLE -> {
+                Token name = this.token();
+                return new Expr.Variable(name, this.binding());
+            }
+            default -> throw new IOException("Unknown expression tag " + tag + ".");
+        }
+    }
+
+    public Object value() throws IOException {
+        byte tag = this.in.get();
+        return switch (tag) {
+            case AstWriter.NULL -> null;
+            case AstWriter.FALSE -> false;
+            case AstWriter.TRUE -> true;
+            case AstWriter.NUMBER -> this.in.getDouble();
+            case AstWriter.STRING -> this.string();
+            default -> throw new IOException("Unknown literal tag " + tag + ".");
+        };
+    }
+
+    public Token token() throws IOException {
+        int type = this.in.get();
+        int start = this.start + this.signed();
+        int length = this.integer();
+        int line = this.line + this.signed();
+        if (type < 0 || type >= Tokens.TYPES.length || start < 0 || length < 0 || start + length > this.source.length) {
+            throw new IOException("Token out of range.");
+        }
+
+        this.start = start;
+        this.line = line;
+        return Tokens.token(this.source, this.symbols, Tokens.TYPES[type], start, length, line);
+    }
+
+    public Binding binding() throws IOException {
+        Binding binding = new Binding();
+        int depth = this.integer() - 1;
+        if (depth == Binding.GLOBAL) {
+            binding.resolve(depth, this.symbols.global(this.symbols.intern(this.string())));
+        } else {
+            binding.resolve(depth, this.integer());
+        }
+        return binding;
+    }
+
+    public String string() throws IOException {
+        byte[] bytes = new byte[this.integer()];
+        this.in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int integer() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = this.in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Integer too long.");
+    }
+
+    public int signed() throws IOException {
+        int value = this.integer();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,343 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Writes a resolved tree in the binary form AstReader reads back. Tokens are written as ranges of the source, which the
+// reader has anyway, and bindings as the resolver left them, except that a global is written by name since its index
+// is its engine's numbering, which only holds within one engine. Inline caches start out empty, so they are not written at all.
+//
+// Integers are variable-length, and a token's offset and line are written relative to the token before it, so most
+// tokens take four or five bytes.
+public class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    public static final byte NULL = 0;
+
+    public static final byte ASSIGN = 1;
+    public static final byte BINARY = 2;
+    public static final byte CALL = 3;
+    public static final byte GET = 4;
+    public static final byte GROUPING = 5;
+    public static final byte LITERAL = 6;
+    public static final byte LOGICAL = 7;
+    public static final byte SET = 8;
+    public static final byte SUPER = 9;
+    public static final byte THIS = 10;
+    public static final byte UNARY = 11;
+    public static final byte VARIABLE = 12;
+
+    public static final byte BLOCK = 1;
+    public static final byte CLASS = 2;
+    public static final byte EXPRESSION = 3;
+    public static final byte FUNCTION = 4;
+    public static final byte IF = 5;
+    public static final byte PRINT = 6;
+    public static final byte RETURN = 7;
+    public static final byte VAR = 8;
+    public static final byte WHILE = 9;
+
+    public static final byte FALSE = 1;
+    public static final byte TRUE = 2;
+    public static final byte NUMBER = 3;
+    public static final byte STRING = 4;
+
+    public final DataOutputStream out;
+    public int start = 0;
+    public int line = 0;
+
+    public AstWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    public void write(List<Stmt> statements) throws IOException {
+        try {
+            this.statements(statements);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+    }
+
+    public void statements(List<? extends Stmt> statements) {
+        this.integer(statements.size());
+        for (Stmt statement : statements) {
+            this.statement(statement);
+        }
+    }
+
+    public void statement(Stmt stmt) {
+        if (stmt == null) {
+            this.tag(NULL);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    public void expressions(List<Expr> expressions) {
+        this.integer(expressions.size());
+        for (Expr expression : expressions) {
+            this.expression(expression);
+        }
+    }
+
+    public void expression(Expr expr) {
+        if (expr == null) {
+            this.tag(NULL);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    public void tokens(List<Token> tokens) {
+        this.integer(tokens.size());
+        for (Token token : tokens) {
+            this.token(token);
+        }
+    }
+
+    public void token(Token token) {
+        this.tag((byte) token.type().ordinal());
+        this.signed(token.start() - this.start);
+        this.integer(token.length());
+        this.signed(token.line() - this.line);
+        this.start = token.start();
+        this.line = token.line();
+    }
+
+    public void binding(Binding binding, Token name) {
+        // Depths start at GLOBAL, which is -1.
+        this.integer(binding.depth + 1);
+        if (binding.isGlobal()) {
+            this.string(name.symbol().name);
+        } else {
+            this.integer(binding.slot);
+        }
+    }
+
+    public void tag(byte tag) {
+        try {
+            this.out.writeByte(tag);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // Seven bits at a time, low bits first, with the high bit set on all but the last byte.
+    public void integer(int value) {
+        try {
+            while ((value & ~0x7f) != 0) {
+                this.out.writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            this.out.writeByte(value);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // Zigzag, so that small negative numbers stay small too.
+    public void signed(int value) {
+        this.integer((value << 1) ^ (value >> 31));
+    }
+
+    // Not writeUTF, which is limited to 64K.
+    public void string(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.integer(bytes.length);
+        try {
+            this.out.write(bytes);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        this.tag(BLOCK);
+        this.statements(stmt.statements());
+        this.tag(stmt.scope().inline ? TRUE : FALSE);
+        this.integer(stmt.scope().base);
+        this.integer(stmt.scope().size);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        this.tag(CLASS);
+        this.token(stmt.name());
+        this.expression(stmt.superclass());
+        this.statements(stmt.methods());
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        this.tag(EXPRESSION);
+        this.expression(stmt.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        this.tag(FUNCTION);
+        this.token(stmt.name());
+        this.tokens(stmt.params());
+        this.statements(stmt.body());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        this.tag(IF);
+        this.expression(stmt.condition());
+        this.statement(stmt.thenBranch());
+        this.statement(stmt.elseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        this.tag(PRINT);
+        this.expression(stmt.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        this.tag(RETURN);
+        this.token(stmt.keyword());
+        this.expression(stmt.value());
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        this.tag(VAR);
+        this.token(stmt.name());
+        this.expression(stmt.initializer());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        this.tag(WHILE);
+        this.expression(stmt.condition());
+        this.statement(stmt.body());
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        this.tag(ASSIGN);
+        this.token(expr.name());
+        this.expression(expr.value());
+        this.binding(expr.binding(), expr.name());
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        this.tag(BINARY);
+        this.expression(expr.left());
+        this.token(expr.operator());
+        this.expression(expr.right());
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        this.tag(CALL);
+        this.expression(expr.callee());
+        this.token(expr.paren());
+        this.expressions(expr.arguments());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        this.tag(GET);
+        this.expression(expr.object());
+        this.token(expr.name());
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        this.tag(GROUPING);
+        this.expression(expr.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        this.tag(LITERAL);
+        if (expr.value() == null) {
+            this.tag(NULL);
+        } else if (expr.value() instanceof Boolean value) {
+            this.tag(value ? TRUE : FALSE);
+        } else if (expr.value() instanceof Double value) {
+            this.tag(NUMBER);
+            try {
+                this.out.writeDouble(value);
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+        } else {
+            this.tag(STRING);
+            this.string(expr.value().toString());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        this.tag(LOGICAL);
+        this.expression(expr.left());
+        this.token(expr.operator());
+        this.expression(expr.right());
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        this.tag(SET);
+        this.expression(expr.object());
+        this.token(expr.name());
+        this.expression(expr.value());
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        this.tag(SUPER);
+        this.token(expr.keyword());
+        this.token(expr.method());
+        this.binding(expr.binding(), expr.keyword());
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        this.tag(THIS);
+        this.token(expr.keyword());
+        this.binding(expr.binding(), expr.keyword());
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        this.tag(UNARY);
+        this.token(expr.operator());
+        this.expression(expr.right());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        this.tag(VARIABLE);
+        this.token(expr.name());
+        this.binding(expr.binding(), expr.name());
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+import io.portfolio.ewhitaker.Main;
+
+// Runs many scripts in one JVM on a work-stealing pool, so that a batch of small scripts pays for starting the JVM and
+// warming up its JIT once rather than once per script. Each script runs in a context of a fresh engine of its own, so
+// the names one uses do not stay behind, and its output is captured and reported in order along with the status jlox
+// would have exited with and how long it took.
+public class Batch {
+    public record Result(Path script, int status, String output, String errors, long compileNanos, long runNanos) {
+    }
+
+    public final LoxEngine engine;
+    public final ForkJoinPool pool;
+
+    public Batch(LoxEngine engine, int parallelism) {
+        this.engine = engine;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // Every .lox file under a directory, or the scripts a manifest lists one to a line, relative to the manifest.
+    // Blank lines and lines starting with # are skipped.
+    public static List<Path> scripts(Path path) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(file -> file.toString().endsWith(".lox") && Files.isRegularFile(file))
+                        .sorted()
+                        .forEach(scripts::add);
+            }
+            return scripts;
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(path)) {
+            line = line.strip();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                scripts.add(directory.resolve(line));
+            }
+        }
+        return scripts;
+    }
+
+    public Result run(Path script) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        LoxContext context = this.engine.fresh().createContext(
+                new PrintStream(out, false, StandardCharsets.UTF_8), new PrintStream(err, false, StandardCharsets.UTF_8)
+        );
+
+        long start = System.nanoTime();
+        long compiled = start;
+        int status;
+        try {
+            Program program = context.compile(Source.map(script));
+            compiled = System.nanoTime();
+            if (program == null) {
+                status = Main.EXIT_DATA_ERROR;
+            } else {
+                context.run(program);
+                status = context.reporter.hadRuntimeError ? Main.EXIT_SOFTWARE : Main.EXIT_OK;
+            }
+        } catch (IOException error) {
+            context.reporter.err.println("Can't read " + script + " (" + error.getClass().getSimpleName() + ").");
+            status = Main.EXIT_NO_INPUT;
+        } catch (RuntimeException | StackOverflowError error) {
+            // Whatever would have ended jlox with a stack trace ends only this script.
+            context.reporter.err.println(error);
+            status = Main.EXIT_SOFTWARE;
+        }
+        long end = System.nanoTime();
+
+        context.out.flush();
+        context.reporter.err.flush();
+        return new Result(
+                script,
+                status,
+                out.toString(StandardCharsets.UTF_8),
+                err.toString(StandardCharsets.UTF_8),
+                compiled - start,
+                end - compiled
+        );
+    }
+
+    // Reports each script as soon as it and every script before it are done, so results are not all held at once.
+    // Returns the highest status of any script.
+    public int run(List<Path> scripts, PrintStream out) {
+        long start = System.nanoTime();
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(scripts.size());
+        for (Path script : scripts) {
+            tasks.add(this.pool.submit(() -> this.run(script)));
+        }
+
+        int status = Main.EXIT_OK;
+        int failed = 0;
+        long busy = 0;
+        for (int i = 0; i < tasks.size(); ++i) {
+            Result result = tasks.get(i).join();
+            tasks.set(i, null);
+
+            out.printf(
+                    "=== %s: exit %d, compile %.2f ms, run %.2f ms%n",
+                    result.script(), result.status(), result.compileNanos() / 1e6, result.runNanos() / 1e6
+            );
+            out.print(result.output());
+            out.print(result.errors());
+
+            status = Math.max(status, result.status());
+            failed += result.status() == Main.EXIT_OK ? 0 : 1;
+            busy += result.compileNanos() + result.runNanos();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        out.printf(
+                "%d scripts, %d failed, in %.2f s on %d threads: %.1f scripts/s, %.1f ms of work per script%n",
+                scripts.size(), failed, elapsed / 1e9, this.pool.getParallelism(),
+                scripts.size() * 1e9 / elapsed, scripts.isEmpty() ? 0 : busy / 1e6 / scripts.size()
+        );
+        return status;
+    }
+}
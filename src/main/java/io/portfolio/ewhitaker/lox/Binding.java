@@ -0,0 +1,17 @@
+package io.portfolio.ewhitaker.lox;
+
+public class Binding {
+    public static final int GLOBAL = -1;
+
+    public int depth = GLOBAL;
+    public int slot = 0;
+
+    public void resolve(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    public boolean isGlobal() {
+        return this.depth == GLOBAL;
+    }
+}
@@ -0,0 +1,9 @@
+package io.portfolio.ewhitaker.lox;
+
+// How a statement finished, in both tree-walking engines. A RETURN unwinds through the enclosing blocks, loops and ifs
+// back to the function call, which picks the value up from Evaluator.returnValue or, in the node interpreter, from
+// Frame.returnValue.
+public enum Completion {
+    NORMAL,
+    RETURN
+}
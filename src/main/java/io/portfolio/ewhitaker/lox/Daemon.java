@@ -0,0 +1,353 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.portfolio.ewhitaker.Main;
+
+// Keeps one warm interpreter resident behind a Unix domain socket, so that running a script costs a connection rather
+// than a JVM start and a cold JIT. Every request runs in a context of a fresh engine on a fixed pool of threads, so
+// nothing one request defines or names stays behind for the next.
+//
+// A client sends one request, a kind and a UTF-8 string: either the absolute path of a script for the daemon to read,
+// or the source itself. The daemon answers with frames, each a kind and then an int: STDOUT and STDERR frames carry
+// that many bytes of output, and the one EXIT frame carries the status jlox would have exited with, after which the
+// daemon closes the connection. Output is batched into frames of up to BUFFER bytes, but none waits longer than about
+// LINGER, so a script that prints and then works for a while is still seen to print. A request longer than
+// MAX_REQUEST bytes is answered with EXIT_USAGE and never read; a larger script can still be sent by its path.
+//
+// A client that hangs up before its script ends gets nothing more, so the script is stopped rather than left to hold a
+// worker: while it runs, a watcher reads the connection, and when that finds the end of the stream, or a write of the
+// script's output fails, the worker is interrupted, which unwinds the run as it does a task's.
+public class Daemon {
+    public static final byte PATH = 1;
+    public static final byte SOURCE = 2;
+
+    public static final byte STDOUT = 1;
+    public static final byte STDERR = 2;
+    public static final byte EXIT = 3;
+
+    public static final int BUFFER = 8192;
+    public static final int MAX_REQUEST = 16 * 1024 * 1024;
+    public static final long LINGER = 50_000_000;
+
+    public final LoxEngine engine;
+    public final Path socket;
+    public final ExecutorService workers;
+    public final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    public final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jlox-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    public final ExecutorService watchers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jlox-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    public volatile ServerSocketChannel server = null;
+    public volatile boolean closed = false;
+
+    public Daemon(LoxEngine engine, Path socket, int threads) {
+        this.engine = engine;
+        this.socket = socket;
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    // $XDG_RUNTIME_DIR/jlox.sock, which only its owner can reach, falling back to a socket of the user's own in the
+    // temporary directory.
+    public static Path defaultSocket() {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        if (runtime == null || runtime.isEmpty()) {
+            return Path.of(System.getProperty("java.io.tmpdir"), "jlox-" + System.getProperty("user.name") + ".sock");
+        }
+        return Path.of(runtime, "jlox.sock");
+    }
+
+    public void serve() throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(this.socket);
+        // A socket file nobody answers on is left over from a daemon that died, but one that answers is still in use.
+        if (listening(address)) {
+            throw new IOException("A daemon is already listening on " + this.socket + ".");
+        }
+        Files.deleteIfExists(this.socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            this.server = server;
+            this.bind(server);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(this.socket);
+                } catch (IOException ignored) {
+                    // Nothing more to do.
+                }
+            }));
+
+            this.flusher.scheduleWithFixedDelay(this::linger, LINGER, LINGER, TimeUnit.NANOSECONDS);
+            for (;;) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException error) {
+                    if (this.closed) {
+                        return;
+                    }
+                    throw error;
+                }
+                this.workers.execute(() -> this.handle(client));
+            }
+        } finally {
+            Files.deleteIfExists(this.socket);
+        }
+    }
+
+    // Stops accepting, interrupts whatever is running and makes serve return.
+    public void close() throws IOException {
+        this.closed = true;
+        ServerSocketChannel server = this.server;
+        if (server != null) {
+            server.close();
+        }
+        this.workers.shutdownNow();
+        this.watchers.shutdownNow();
+        this.flusher.shutdownNow();
+    }
+
+    // Anyone who can connect can run code as this user, so nobody else may reach the socket even for a moment. Java
+    // can't set a umask, so the socket is bound in a directory only this user can enter, made private there and then
+    // moved into place.
+    public void bind(ServerSocketChannel server) throws IOException {
+        Path directory = Files.createTempDirectory(
+                this.socket.toAbsolutePath().getParent(),
+                ".jlox-",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))
+        );
+        Path bound = directory.resolve("socket");
+        try {
+            server.bind(UnixDomainSocketAddress.of(bound));
+            Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            Files.move(bound, this.socket, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(bound);
+            Files.delete(directory);
+        }
+    }
+
+    public static boolean listening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException error) {
+            return false;
+        }
+    }
+
+    public void linger() {
+        long now = System.nanoTime();
+        for (Connection connection : this.connections) {
+            try {
+                connection.flush(now);
+            } catch (IOException error) {
+                // The worker finds out for itself when it next writes.
+            }
+        }
+    }
+
+    public void handle(SocketChannel client) {
+        Connection connection = new Connection(
+                new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client))), Thread.currentThread()
+        );
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+            byte kind = in.readByte();
+            int length = in.readInt();
+            if (length < 0 || length > MAX_REQUEST) {
+                PrintStream err = new PrintStream(connection.stream(STDERR), false, StandardCharsets.UTF_8);
+                err.println("Requests are limited to " + MAX_REQUEST + " bytes, not " + length + ".");
+                err.flush();
+                connection.exit(Main.EXIT_USAGE);
+                return;
+            }
+            byte[] request = new byte[length];
+            in.readFully(request);
+
+            this.connections.add(connection);
+            this.watchers.execute(() -> watch(client, connection));
+            connection.exit(this.run(connection, kind, new String(request, StandardCharsets.UTF_8)));
+        } catch (IOException | RuntimeException error) {
+            // The client went away or sent nonsense, and there is nobody left to tell.
+        } finally {
+            connection.finish();
+            this.connections.remove(connection);
+        }
+    }
+
+    // A client sends nothing after its request, so the first thing a read finds is the end of the stream, or the
+    // error of the worker closing the connection once it is done, which finds the request already finished.
+    public static void watch(SocketChannel client, Connection connection) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        try {
+            while (client.read(buffer.clear()) >= 0) {
+                // Anything more is ignored.
+            }
+        } catch (IOException error) {
+            // Closed by either side; the same either way.
+        }
+        connection.hangUp();
+    }
+
+    public int run(Connection connection, byte kind, String request) {
+        LoxContext context = this.engine.fresh().createContext(
+                new PrintStream(connection.stream(STDOUT), false, StandardCharsets.UTF_8),
+                new PrintStream(connection.stream(STDERR), false, StandardCharsets.UTF_8)
+        );
+
+        try {
+            Source source;
+            if (kind == PATH) {
+                source = Source.map(Path.of(request));
+            } else if (kind == SOURCE) {
+                source = new Source(request);
+            } else {
+                context.reporter.err.println("Unknown request " + kind + ".");
+                return Main.EXIT_USAGE;
+            }
+
+            context.run(source);
+        } catch (IOException error) {
+            context.reporter.err.println("Can't read " + request + " (" + error.getClass().getSimpleName() + ").");
+            return Main.EXIT_NO_INPUT;
+        } catch (RuntimeException | StackOverflowError error) {
+            // Whatever would have ended jlox with a stack trace ends only this request.
+            context.reporter.err.println(error);
+            return Main.EXIT_SOFTWARE;
+        } finally {
+            context.out.flush();
+            context.reporter.err.flush();
+        }
+
+        if (context.reporter.hadError) {
+            return Main.EXIT_DATA_ERROR;
+        }
+        if (context.reporter.hadRuntimeError) {
+            return Main.EXIT_SOFTWARE;
+        }
+        return Main.EXIT_OK;
+    }
+
+    // The response side of one connection. Both of a context's streams write through here, so output reaches the
+    // client in the order it was written.
+    public static final class Connection {
+        public final DataOutputStream out;
+        public final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        public byte stream = STDOUT;
+        public long sent = System.nanoTime();
+        // The thread running the request, until it finishes. Guarded by its own lock rather than the connection's,
+        // which a write blocked on the client may be holding.
+        public Thread worker;
+        public final Object workerLock = new Object();
+
+        public Connection(DataOutputStream out, Thread worker) {
+            this.out = out;
+            this.worker = worker;
+        }
+
+        // The client has gone, so the request, if it is still running, is stopped.
+        public void hangUp() {
+            synchronized (this.workerLock) {
+                if (this.worker != null) {
+                    this.worker.interrupt();
+                }
+            }
+        }
+
+        // Called by the worker once the request is over, clearing any interrupt meant for it, so that a hang-up noticed
+        // late can't interrupt the worker's next request.
+        public void finish() {
+            synchronized (this.workerLock) {
+                this.worker = null;
+                Thread.interrupted();
+            }
+        }
+
+        public synchronized void write(byte stream, byte[] bytes, int offset, int length) throws IOException {
+            if (stream != this.stream) {
+                this.flush();
+                this.stream = stream;
+            }
+
+            this.pending.write(bytes, offset, length);
+            if (this.pending.size() >= BUFFER) {
+                this.flush();
+            }
+        }
+
+        // Sends whatever has waited since before LINGER ago.
+        public synchronized void flush(long now) throws IOException {
+            if (now - this.sent >= LINGER) {
+                this.flush();
+            }
+        }
+
+        public synchronized void flush() throws IOException {
+            if (this.pending.size() > 0) {
+                try {
+                    this.out.writeByte(this.stream);
+                    this.out.writeInt(this.pending.size());
+                    this.pending.writeTo(this.out);
+                    this.pending.reset();
+                    this.out.flush();
+                } catch (IOException error) {
+                    this.hangUp();
+                    throw error;
+                }
+            }
+            this.sent = System.nanoTime();
+        }
+
+        public synchronized void exit(int status) throws IOException {
+            this.flush();
+            this.out.writeByte(EXIT);
+            this.out.writeInt(status);
+            this.out.flush();
+        }
+
+        public OutputStream stream(byte stream) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    Connection.this.write(stream, new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    Connection.this.write(stream, bytes, offset, length);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import io.portfolio.ewhitaker.Main;
+
+// Sends one request to a Daemon and copies what comes back to this process's own streams. It touches nothing of the
+// interpreter but the protocol's constants, so starting it costs little more than starting the JVM.
+public class DaemonClient {
+    public static int run(Path socket, byte kind, String request) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException error) {
+            System.err.println("No daemon is listening on " + socket + ".");
+            return Main.EXIT_UNAVAILABLE;
+        }
+
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            byte[] bytes = request.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(kind);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[Daemon.BUFFER];
+            for (;;) {
+                byte frame = in.readByte();
+                int length = in.readInt();
+                if (frame == Daemon.EXIT) {
+                    System.out.flush();
+                    return length;
+                }
+
+                if (length > buffer.length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                if (frame == Daemon.STDERR) {
+                    System.out.flush();
+                    System.err.write(buffer, 0, length);
+                    System.err.flush();
+                } else {
+                    System.out.write(buffer, 0, length);
+                }
+            }
+        } catch (EOFException error) {
+            System.out.flush();
+            System.err.println("The daemon closed the connection before the script finished.");
+            return Main.EXIT_UNAVAILABLE;
+        } catch (IOException error) {
+            System.out.flush();
+            System.err.println("Lost the connection to the daemon: " + error.getMessage());
+            return Main.EXIT_UNAVAILABLE;
+        }
+    }
+}
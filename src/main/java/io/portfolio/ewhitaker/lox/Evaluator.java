@@ -1,32 +1,33 @@
 package io.portfolio.ewhitaker.lox;
 
-import java.util.ArrayList;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    public Environment globals = new Environment();
-    public Environment environment = globals;
-    public final Map<Expr, Integer> locals = new HashMap<>();
+import io.portfolio.ewhitaker.lox.jit.Jit;
 
-    public Evaluator() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() {
-                return 0;
-            }
+public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
+    public final LoxContext context;
+    public final Globals globals;
+    public Frame frame = null;
+    public Jit jit = null;
+    public Object returnValue = null;
+    // The result of the last evaluateNumber that returned Frame.NUMBER.
+    public double number = 0;
 
-            @Override
-            public Object call(Evaluator evaluator, List<Object> arguments) {
-                return System.currentTimeMillis() / 1000.0;
-            }
+    public Evaluator(LoxContext context) {
+        this.context = context;
+        this.globals = new Globals(context.engine.symbols);
+        Natives.define(this.globals, context);
+    }
 
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
-        });
+    // A spawned task's evaluator, with frames of its own over the same context, globals and compiled code.
+    public Evaluator(Evaluator parent) {
+        this.context = parent.context;
+        this.globals = parent.globals;
+        this.jit = parent.jit;
     }
 
     public void evaluate(List<Stmt> statements) {
@@ -35,43 +36,110 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 this.evaluate(statement);
             }
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            this.context.reporter.runtimeError(error);
         }
     }
 
-    public void evaluate(Stmt stmt) {
-        stmt.accept(this);
+    public Completion evaluate(Stmt stmt) {
+        return stmt.accept(this);
     }
 
     public Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
-    public void resolve(Expr expr, int depth) {
-        this.locals.put(expr, depth);
+    // Evaluates expr like evaluate, except that a number is left unboxed in this.number and Frame.NUMBER is returned
+    // in its place. Arithmetic, comparisons and local variables go through here so that only the values that escape
+    // into an Object are ever boxed.
+    public Object evaluateNumber(Expr expr) {
+        Object value;
+        if (expr instanceof Expr.Binary binary) {
+            value = this.binary(binary);
+        } else if (expr instanceof Expr.Literal literal) {
+            value = literal.value();
+        } else if (expr instanceof Expr.Variable variable) {
+            value = this.lookUpNumber(variable.name(), variable.binding());
+        } else if (expr instanceof Expr.Assign assign) {
+            value = this.assign(assign);
+        } else if (expr instanceof Expr.Grouping grouping) {
+            value = this.evaluateNumber(grouping.expression());
+        } else if (expr instanceof Expr.Unary unary && unary.operator().type() == TokenType.MINUS) {
+            value = this.negate(unary);
+        } else {
+            value = this.evaluate(expr);
+        }
+
+        if (value instanceof Double number) {
+            this.number = number;
+            return Frame.NUMBER;
+        }
+        return value;
     }
 
-    public void executeBlock(List<Stmt> statements, Environment environment) {
-        Environment previous = this.environment;
+    public static Object box(Object value, double number) {
+        if (value == Frame.NUMBER) {
+            return number;
+        }
+        return value;
+    }
+
+    public Completion executeBlock(List<Stmt> statements, Frame frame) {
+        Frame previous = this.frame;
         try {
-            this.environment = environment;
+            this.frame = frame;
 
             for (Stmt statement : statements) {
-                this.evaluate(statement);
+                if (this.evaluate(statement) == Completion.RETURN) {
+                    return Completion.RETURN;
+                }
             }
+            return Completion.NORMAL;
         } finally {
-            this.environment = previous;
+            this.frame = previous;
+        }
+    }
+
+    public LoxFunction function(Stmt.Function declaration, boolean isMethod, boolean isInitializer) {
+        if (this.jit != null) {
+            return this.jit.function(this, declaration, this.frame, isMethod, isInitializer);
+        }
+        return new LoxFunction(declaration, this.frame, isInitializer);
+    }
+
+    public void define(Token name, Object value) {
+        if (this.frame == null) {
+            this.globals.define(name.symbol(), value);
+        } else {
+            this.frame.define(value);
         }
     }
 
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        this.executeBlock(stmt.statements(), new Environment(this.environment));
-        return null;
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.scope().inline) {
+            return this.executeInline(stmt.statements());
+        }
+        return this.executeBlock(stmt.statements(), new Frame(this.frame, stmt.scope().size));
+    }
+
+    // Runs a block in the current frame and then gives back the slots its declarations took. A return leaves the
+    // function, and its frame with it, so there is nothing to give back then.
+    public Completion executeInline(List<Stmt> statements) {
+        int count = this.frame == null ? 0 : this.frame.count;
+        for (Stmt statement : statements) {
+            if (this.evaluate(statement) == Completion.RETURN) {
+                return Completion.RETURN;
+            }
+        }
+
+        if (this.frame != null) {
+            this.frame.count = count;
+        }
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
+    public Completion visitClassStmt(Stmt.Class stmt) {
         Object superclass = null;
         if (stmt.superclass() != null) {
             superclass = this.evaluate(stmt.superclass());
@@ -80,97 +148,118 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         }
 
-        this.environment.define(stmt.name().lexeme(), null);
+        int slot = this.frame == null ? -1 : this.frame.count;
+        this.define(stmt.name(), null);
 
         if (stmt.superclass() != null) {
-            this.environment = new Environment(this.environment);
-            this.environment.define("super", superclass);
+            this.frame = new Frame(this.frame, 1);
+            this.frame.define(superclass);
         }
 
-        Map<String, LoxFunction> methods = new HashMap<>();
+        Map<Symbol, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods()) {
-            LoxFunction function = new LoxFunction(method, this.environment, method.name().lexeme().equals("init"));
-            methods.put(method.name().lexeme(), function);
+            LoxFunction function = this.function(method, true, method.name().symbol() == Symbol.INIT);
+            methods.put(method.name().symbol(), function);
         }
 
         LoxClass klass = new LoxClass(stmt.name().lexeme(), (LoxClass) superclass, methods);
 
         if (superclass != null) {
-            this.environment = this.environment.enclosing;
+            this.frame = this.frame.enclosing;
         }
 
-        this.environment.assign(stmt.name(), klass);
-        return null;
+        if (this.frame == null) {
+            this.globals.define(stmt.name().symbol(), klass);
+        } else {
+            this.frame.values[slot] = klass;
+        }
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
-        this.evaluate(stmt.expression());
-        return null;
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
+        this.evaluateNumber(stmt.expression());
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt, this.environment, false);
-        this.environment.define(stmt.name().lexeme(), function);
-        return null;
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
+        LoxFunction function = this.function(stmt, false, false);
+        this.define(stmt.name(), function);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
-        if (this.isTruthy(this.evaluate(stmt.condition()))) {
-            this.evaluate(stmt.thenBranch());
+    public Completion visitIfStmt(Stmt.If stmt) {
+        if (isTruthy(this.evaluate(stmt.condition()))) {
+            return this.evaluate(stmt.thenBranch());
         } else if (stmt.elseBranch() != null) {
-            this.evaluate(stmt.elseBranch());
+            return this.evaluate(stmt.elseBranch());
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
         Object value = this.evaluate(stmt.expression());
-        System.out.println(this.stringify(value));
-        return null;
+        this.context.out.println(this.stringify(value));
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
         if (stmt.value() != null) {
             value = this.evaluate(stmt.value());
         }
 
-        throw new Return(value);
+        this.returnValue = value;
+        return Completion.RETURN;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer() != null) {
-            value = this.evaluate(stmt.initializer());
+            value = this.evaluateNumber(stmt.initializer());
         }
 
-        this.environment.define(stmt.name().lexeme(), value);
-        return null;
+        if (value == Frame.NUMBER && this.frame != null) {
+            this.frame.defineNumber(this.number);
+        } else {
+            this.define(stmt.name(), box(value, this.number));
+        }
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
-        while (this.isTruthy(this.evaluate(stmt.condition()))) {
-            this.evaluate(stmt.body());
+    public Completion visitWhileStmt(Stmt.While stmt) {
+        while (isTruthy(this.evaluate(stmt.condition()))) {
+            LoxTask.checkCancelled();
+            if (this.evaluate(stmt.body()) == Completion.RETURN) {
+                return Completion.RETURN;
+            }
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
-        Object value = this.evaluate(expr.value());
+        return box(this.assign(expr), this.number);
+    }
+
+    public Object assign(Expr.Assign expr) {
+        Object value = this.evaluateNumber(expr.value());
 
-        Integer distance = this.locals.get(expr);
-        if (distance != null) {
-            this.environment.assignAt(distance, expr.name(), value);
+        Binding binding = expr.binding();
+        if (!binding.isGlobal()) {
+            if (value == Frame.NUMBER) {
+                this.frame.assignNumberAt(binding.depth, binding.slot, this.number);
+            } else {
+                this.frame.assignAt(binding.depth, binding.slot, value);
+            }
         } else {
-            this.globals.assign(expr.name(), value);
+            this.globals.assign(expr.name(), binding.slot, box(value, this.number));
         }
 
         return value;
@@ -178,9 +267,51 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = this.evaluate(expr.left());
-        Object right = this.evaluate(expr.right());
+        return box(this.binary(expr), this.number);
+    }
+
+    public Object binary(Expr.Binary expr) {
+        Object left = this.evaluateNumber(expr.left());
+        double l = this.number;
+        Object right = this.evaluateNumber(expr.right());
+        double r = this.number;
+
+        if (left == Frame.NUMBER && right == Frame.NUMBER) {
+            switch (expr.operator().type()) {
+                // Matches Double.equals, which is what isEqual compares boxed numbers with.
+                case BANG_EQUAL:
+                    return Double.doubleToLongBits(l) != Double.doubleToLongBits(r);
+                case EQUAL_EQUAL:
+                    return Double.doubleToLongBits(l) == Double.doubleToLongBits(r);
+                case GREATER:
+                    return l > r;
+                case GREATER_EQUAL:
+                    return l >= r;
+                case LESS:
+                    return l < r;
+                case LESS_EQUAL:
+                    return l <= r;
+                case MINUS:
+                    this.number = l - r;
+                    return Frame.NUMBER;
+                case PLUS:
+                    this.number = l + r;
+                    return Frame.NUMBER;
+                case SLASH:
+                    this.number = l / r;
+                    return Frame.NUMBER;
+                case STAR:
+                    this.number = l * r;
+                    return Frame.NUMBER;
+                default:
+                    return null; // Unreachable.
+            }
+        }
 
+        return this.binary(expr, box(left, l), box(right, r));
+    }
+
+    public Object binary(Expr.Binary expr, Object left, Object right) {
         return switch (expr.operator().type()) {
             case BANG_EQUAL -> !isEqual(left, right);
             case EQUAL_EQUAL -> isEqual(left, right);
@@ -209,8 +340,8 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     yield l + r;
                 }
 
-                if (left instanceof String l && right instanceof String r) {
-                    yield l + r;
+                if (Rope.isString(left) && Rope.isString(right)) {
+                    yield Rope.concat(left, right);
                 }
 
                 throw new RuntimeError(expr.operator(), "Operands must be two numbers or two strings.");
@@ -229,31 +360,68 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
+        if (expr.callee() instanceof Expr.Get get) {
+            return this.invoke(get, expr);
+        }
+
         Object callee = this.evaluate(expr.callee());
+        return this.call(callee, this.evaluateArguments(expr.arguments()), expr.paren());
+    }
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments()) {
-            arguments.add(this.evaluate(argument));
+    // Calls obj.name(...) without binding the method to obj first.
+    public Object invoke(Expr.Get get, Expr.Call expr) {
+        Object object = this.evaluate(get.object());
+        if (!(object instanceof LoxInstance instance)) {
+            throw new RuntimeError(get.name(), "Only instances have properties.");
+        }
+
+        InlineCache.Entry entry = get.cache().property(this.context.execution, instance, get.name());
+        if (entry.method() == null) {
+            Object callee = instance.values[entry.index()];
+            return this.call(callee, this.evaluateArguments(expr.arguments()), expr.paren());
         }
 
+        Object[] arguments = this.evaluateArguments(expr.arguments());
+        this.checkArity(expr.paren(), entry.method(), arguments.length);
+        return entry.method().invoke(this, instance, arguments);
+    }
+
+    public Object call(Object callee, Object[] arguments, Token paren) {
         if (!(callee instanceof LoxCallable function)) {
-            throw new RuntimeError(expr.paren(), "Can only call functions and classes.");
+            throw new RuntimeError(paren, "Can only call functions and classes.");
         }
 
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(
-                    expr.paren(), "Expected " + function.arity() + "  arguments but got " + arguments.size() + "."
-            );
+        this.checkArity(paren, function, arguments.length);
+
+        if (function instanceof LoxFunction method) {
+            return method.invoke(this, method.receiver, arguments);
+        }
+        try {
+            return function.call(this, Arrays.asList(arguments));
+        } catch (RuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+
+    public Object[] evaluateArguments(List<Expr> expressions) {
+        Object[] arguments = new Object[expressions.size()];
+        for (int i = 0; i < arguments.length; ++i) {
+            arguments[i] = this.evaluate(expressions.get(i));
         }
+        return arguments;
+    }
 
-        return function.call(this, arguments);
+    public void checkArity(Token paren, LoxCallable function, int count) {
+        if (count != function.arity()) {
+            throw new RuntimeError(paren, "Expected " + function.arity() + "  arguments but got " + count + ".");
+        }
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) {
         Object object = this.evaluate(expr.object());
         if (object instanceof LoxInstance instance) {
-            return instance.get(expr.name());
+            return expr.cache().get(this.context.execution, instance, expr.name());
         }
 
         throw new RuntimeError(expr.name(), "Only instances have properties.");
@@ -274,11 +442,11 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         Object left = this.evaluate(expr.left());
 
         if (expr.operator().type() == TokenType.OR) {
-            if (this.isTruthy(left)) {
+            if (isTruthy(left)) {
                 return left;
             }
         } else {
-            if (!this.isTruthy(left)) {
+            if (!isTruthy(left)) {
                 return left;
             }
         }
@@ -295,57 +463,70 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         Object value = this.evaluate(expr.value());
-        instance.set(expr.name(), value);
+        expr.cache().set(this.context.execution, instance, expr.name(), value);
         return value;
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = this.locals.get(expr);
-        LoxClass superclass = (LoxClass) this.environment.getAt(distance, "super");
-
-        LoxInstance object = (LoxInstance) this.environment.getAt(distance - 1, "this");
+        int distance = expr.binding().depth;
+        LoxClass superclass = (LoxClass) this.frame.getAt(distance, 0);
 
-        LoxFunction method = superclass.findMethod(expr.method().lexeme());
+        LoxInstance object = (LoxInstance) this.frame.getAt(distance - 1, 0);
 
-        if (method == null) {
-            throw new RuntimeError(expr.method(), "Undefined property '" + expr.method().lexeme() + "'.");
-        }
-
-        return method.bind(object);
+        return expr.cache().superMethod(this.context.execution, superclass, expr.method()).bind(object);
     }
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword(), expr);
+        return lookUpVariable(expr.keyword(), expr.binding());
     }
 
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator().type() == TokenType.MINUS) {
+            return box(this.negate(expr), this.number);
+        }
+
         Object right = this.evaluate(expr.right());
+        return !isTruthy(right);
+    }
 
-        return switch (expr.operator().type()) {
-            case BANG -> !this.isTruthy(right);
-            case MINUS -> {
-                checkNumberOperand(expr.operator(), right);
-                yield -((double) right);
-            }
-            default -> null; // Unreachable.
-        };
+    public Object negate(Expr.Unary expr) {
+        Object right = this.evaluateNumber(expr.right());
+        if (right != Frame.NUMBER) {
+            checkNumberOperand(expr.operator(), right);
+        }
+
+        this.number = -this.number;
+        return Frame.NUMBER;
     }
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name(), expr);
+        return lookUpVariable(expr.name(), expr.binding());
     }
 
-    public Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = this.locals.get(expr);
-        if (distance != null) {
-            return this.environment.getAt(distance, name.lexeme());
+    public Object lookUpVariable(Token name, Binding binding) {
+        if (!binding.isGlobal()) {
+            return this.frame.getAt(binding.depth, binding.slot);
         } else {
-            return this.globals.get(name);
+            return this.globals.get(name, binding.slot);
+        }
+    }
+
+    public Object lookUpNumber(Token name, Binding binding) {
+        if (binding.isGlobal()) {
+            return this.globals.get(name, binding.slot);
         }
+
+        Frame frame = this.frame.ancestor(binding.depth);
+        Object value = frame.values[binding.slot];
+        if (value == Frame.NUMBER) {
+            VarHandle.acquireFence();
+            this.number = frame.numbers[binding.slot];
+        }
+        return value;
     }
 
     public void checkNumberOperand(Token operator, Object operand) {
@@ -364,7 +545,8 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands must be a numbers.");
     }
 
-    public boolean isTruthy(Object object) {
+    // Lox's truthiness and equality, which every engine and the optimizer share.
+    public static boolean isTruthy(Object object) {
         if (object == null) {
             return false;
         }
@@ -376,7 +558,7 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return true;
     }
 
-    public boolean isEqual(Object a, Object b) {
+    public static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) {
             return true;
         }
@@ -385,6 +567,11 @@ public class Evaluator implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             return false;
         }
 
+        // String.equals doesn't know about ropes, but Rope.equals knows about strings.
+        if (b instanceof Rope) {
+            return b.equals(a);
+        }
+
         return a.equals(b);
     }
 
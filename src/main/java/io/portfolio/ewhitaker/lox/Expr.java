@@ -29,7 +29,7 @@ public interface Expr {
         R visitVariableExpr(Variable expr);
     }
 
-    public record Assign(Token name, Expr value) implements Expr {
+    public record Assign(Token name, Expr value, Binding binding) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitAssignExpr(this);
@@ -50,7 +50,7 @@ public interface Expr {
         }
     }
 
-    public record Get(Expr object, Token name) implements Expr {
+    public record Get(Expr object, Token name, InlineCache cache) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitGetExpr(this);
@@ -78,21 +78,21 @@ public interface Expr {
         }
     }
 
-    public record Set(Expr object, Token name, Expr value) implements Expr {
+    public record Set(Expr object, Token name, Expr value, InlineCache cache) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitSetExpr(this);
         }
     }
 
-    public record Super(Token keyword, Token method) implements Expr {
+    public record Super(Token keyword, Token method, Binding binding, InlineCache cache) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitSuperExpr(this);
         }
     }
 
-    public record This(Token keyword) implements Expr {
+    public record This(Token keyword, Binding binding) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitThisExpr(this);
@@ -106,7 +106,7 @@ public interface Expr {
         }
     }
 
-    public record Variable(Token name) implements Expr {
+    public record Variable(Token name, Binding binding) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitVariableExpr(this);
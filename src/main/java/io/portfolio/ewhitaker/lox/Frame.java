@@ -0,0 +1,82 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public class Frame {
+    // Marks a slot whose value is kept unboxed in numbers.
+    public static final Object NUMBER = new Object();
+    public static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    public final Frame enclosing;
+    public Object[] values;
+    public double[] numbers = null;
+    public int count = 0;
+    // Where the node interpreter leaves the value of a return on its way out to the call.
+    public Object returnValue = null;
+
+    public Frame(Frame enclosing, int capacity) {
+        this.enclosing = enclosing;
+        this.values = new Object[capacity];
+    }
+
+    public void define(Object value) {
+        this.reserve();
+        this.values[this.count++] = value;
+    }
+
+    // A number is written before the marker that says to look for it, here and in assignNumberAt, and the marker is
+    // published with a release store. A reader that sees the marker issues an acquire fence before reading numbers, so
+    // another task reading a captured variable finds the array the marker points it to, even though the race itself
+    // may show it an old value. Slots that hold objects are read and written plainly.
+    public void defineNumber(double value) {
+        this.reserve();
+        this.numbers()[this.count] = value;
+        VALUES.setRelease(this.values, this.count++, NUMBER);
+    }
+
+    public void reserve() {
+        if (this.count == this.values.length) {
+            this.values = Arrays.copyOf(this.values, Math.max(4, this.values.length * 2));
+        }
+    }
+
+    public double[] numbers() {
+        if (this.numbers == null) {
+            this.numbers = new double[this.values.length];
+        } else if (this.numbers.length < this.values.length) {
+            this.numbers = Arrays.copyOf(this.numbers, this.values.length);
+        }
+        return this.numbers;
+    }
+
+    public Frame ancestor(int distance) {
+        Frame frame = this;
+        for (int i = 0; i < distance; ++i) {
+            frame = frame.enclosing;
+        }
+
+        return frame;
+    }
+
+    public Object getAt(int distance, int slot) {
+        Frame frame = this.ancestor(distance);
+        Object value = frame.values[slot];
+        if (value == NUMBER) {
+            VarHandle.acquireFence();
+            return frame.numbers[slot];
+        }
+        return value;
+    }
+
+    public void assignAt(int distance, int slot, Object value) {
+        this.ancestor(distance).values[slot] = value;
+    }
+
+    public void assignNumberAt(int distance, int slot, double value) {
+        Frame frame = this.ancestor(distance);
+        frame.numbers()[slot] = value;
+        VALUES.setRelease(frame.values, slot, NUMBER);
+    }
+}
@@ -0,0 +1,84 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.Arrays;
+
+// A context's global variables, indexed by their engine's numbering of global names, so each context's arrays only
+// grow as far as the globals its engine's scripts use.
+public class Globals {
+    public static final Object UNDEFINED = new Object();
+
+    public final SymbolTable symbols;
+    public Object[] values = new Object[16];
+    public Symbol[] names = new Symbol[16];
+
+    public Globals(SymbolTable symbols) {
+        this.symbols = symbols;
+        Arrays.fill(this.values, UNDEFINED);
+    }
+
+    public int indexOf(String name) {
+        return this.indexOf(this.symbols.intern(name));
+    }
+
+    public int indexOf(Symbol name) {
+        int index = this.symbols.global(name);
+        if (index >= this.values.length) {
+            int length = this.values.length;
+            while (length <= index) {
+                length *= 2;
+            }
+
+            int old = this.values.length;
+            this.values = Arrays.copyOf(this.values, length);
+            this.names = Arrays.copyOf(this.names, length);
+            Arrays.fill(this.values, old, length, UNDEFINED);
+        }
+
+        this.names[index] = name;
+        return index;
+    }
+
+    public String nameOf(int index) {
+        return this.names[index].name;
+    }
+
+    public Object get(Token name, int index) {
+        Object value = index < this.values.length ? this.values[index] : UNDEFINED;
+        if (value == UNDEFINED) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+        }
+
+        return value;
+    }
+
+    // UNDEFINED if the name is not defined.
+    public Object valueOf(Symbol name) {
+        int index = this.symbols.find(name);
+        return index >= 0 && index < this.values.length ? this.values[index] : UNDEFINED;
+    }
+
+    public void assign(Token name, int index, Object value) {
+        if (index >= this.values.length || this.values[index] == UNDEFINED) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+        }
+
+        this.values[index] = value;
+    }
+
+    public void define(String name, Object value) {
+        this.define(this.symbols.intern(name), value);
+    }
+
+    public void define(Symbol name, Object value) {
+        // Not this.values[this.indexOf(name)], which would store into the old array if indexOf grows it.
+        int index = this.indexOf(name);
+        this.values[index] = value;
+    }
+
+    public void undefine(Symbol name) {
+        int index = this.symbols.find(name);
+        if (index >= 0 && index < this.values.length) {
+            this.values[index] = UNDEFINED;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A per-site cache of property lookups. Get and Set sites key their entries on the receiver's shape, which pins down
+// both the class and which fields exist, so a field that starts shadowing a method simply misses. Super sites key
+// theirs on the superclass. Entries are immutable and the array holding them is replaced rather than modified, so a
+// site can be shared by threads without locking.
+//
+// A program's tree, and so its sites, is shared by every context that runs it, but classes and shapes are made anew
+// by every run. So each entry belongs to the run that made it, from LoxContext.execution, and a run that sees more than
+// POLYMORPHIC_LIMIT receivers at a site stops caching there for the rest of that run alone. Past CAPACITY entries,
+// the oldest of other runs go first, since a run that has finished never hits them again.
+public class InlineCache {
+    public static final int POLYMORPHIC_LIMIT = 4;
+    public static final int CAPACITY = 8;
+
+    // A megamorphic entry has no key.
+    public record Entry(Object owner, Object key, int index, Shape next, LoxFunction method) {
+    }
+
+    public static final Entry[] EMPTY = new Entry[0];
+
+    public volatile Entry[] entries = EMPTY;
+
+    // Keys are never shared between runs, so a hit needs no check of the owner.
+    public Entry lookup(Object key) {
+        for (Entry entry : this.entries) {
+            if (entry.key() == key) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Entries are added by whichever thread misses, so two threads missing at once may lose one of theirs, which
+    // only costs a later miss.
+    public void remember(Entry entry) {
+        Entry[] entries = this.entries;
+        int owned = 0;
+        for (Entry existing : entries) {
+            if (existing.owner() == entry.owner()) {
+                if (existing.key() == null) {
+                    return;
+                }
+                ++owned;
+            }
+        }
+
+        if (owned == POLYMORPHIC_LIMIT) {
+            entry = new Entry(entry.owner(), null, -1, null, null);
+        }
+
+        List<Entry> remembered = new ArrayList<>(entries.length + 1);
+        for (Entry existing : entries) {
+            // A run that has gone megamorphic keeps only the entry that says so.
+            if (entry.key() != null || existing.owner() != entry.owner()) {
+                remembered.add(existing);
+            }
+        }
+        for (int i = 0; remembered.size() >= CAPACITY && i < remembered.size();) {
+            if (remembered.get(i).owner() != entry.owner()) {
+                remembered.remove(i);
+            } else {
+                ++i;
+            }
+        }
+        remembered.add(entry);
+        this.entries = remembered.toArray(EMPTY);
+    }
+
+    public Entry property(Object owner, LoxInstance instance, Token name) {
+        Entry entry = this.lookup(instance.shape);
+        if (entry == null) {
+            int index = instance.shape.indexOf(name.symbol());
+            if (index >= 0) {
+                entry = new Entry(owner, instance.shape, index, instance.shape, null);
+            } else {
+                LoxFunction method = instance.klass.findMethod(name.symbol());
+                if (method == null) {
+                    throw new RuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
+                }
+                entry = new Entry(owner, instance.shape, -1, instance.shape, method);
+            }
+            this.remember(entry);
+        }
+        return entry;
+    }
+
+    public Object get(Object owner, LoxInstance instance, Token name) {
+        Entry entry = this.property(owner, instance, name);
+        if (entry.method() != null) {
+            return entry.method().bind(instance);
+        }
+        return instance.values[entry.index()];
+    }
+
+    public void set(Object owner, LoxInstance instance, Token name, Object value) {
+        Entry entry = this.lookup(instance.shape);
+        if (entry == null) {
+            int index = instance.shape.indexOf(name.symbol());
+            if (index >= 0) {
+                entry = new Entry(owner, instance.shape, index, instance.shape, null);
+            } else {
+                Shape next = instance.shape.with(name.symbol());
+                entry = new Entry(owner, instance.shape, next.size() - 1, next, null);
+            }
+            this.remember(entry);
+        }
+
+        instance.put(entry.next(), entry.index(), value);
+    }
+
+    public LoxFunction superMethod(Object owner, LoxClass superclass, Token name) {
+        Entry entry = this.lookup(superclass);
+        if (entry == null) {
+            LoxFunction method = superclass.findMethod(name.symbol());
+            if (method == null) {
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
+            }
+            entry = new Entry(owner, superclass, -1, null, method);
+            this.remember(entry);
+        }
+
+        return entry.method();
+    }
+}
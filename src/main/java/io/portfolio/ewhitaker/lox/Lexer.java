@@ -1,51 +1,32 @@
 package io.portfolio.ewhitaker.lox;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 public class Lexer {
-    public static final Map<String, TokenType> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", TokenType.AND);
-        keywords.put("class", TokenType.CLASS);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("fun", TokenType.FUN);
-        keywords.put("if", TokenType.IF);
-        keywords.put("nil", TokenType.NIL);
-        keywords.put("or", TokenType.OR);
-        keywords.put("print", TokenType.PRINT);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("super", TokenType.SUPER);
-        keywords.put("this", TokenType.THIS);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("var", TokenType.VAR);
-        keywords.put("while", TokenType.WHILE);
-    }
-
-    public final String source;
-    public final List<Token> tokens = new ArrayList<>();
+    public static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    public final Source source;
+    public final Tokens tokens;
+    public final Reporter reporter;
     public int start = 0;
     public int current = 0;
     public int line = 1;
 
-    public Lexer(String source) {
+    public Lexer(Source source, SymbolTable symbols, Reporter reporter) {
         this.source = source;
+        this.tokens = new Tokens(source, symbols);
+        this.reporter = reporter;
     }
 
-    public List<Token> scanTokens() {
+    public Tokens scanTokens() {
         while (!this.isAtEnd()) {
             // We are at the beginning of the next lexeme.
             this.start = this.current;
             this.scanToken();
         }
 
-        this.tokens.add(new Token(TokenType.EOF, "", null, line));
+        this.tokens.add(TokenType.EOF, this.current, 0, this.line);
         return this.tokens;
     }
 
@@ -91,7 +72,11 @@ public class Lexer {
                 } else if (this.isAlpha(c)) {
                     this.identifier();
                 } else {
-                    Lox.error(this.line, "Unexpected character.");
+                    // Skip the rest of a multibyte character so that it is reported once.
+                    while ((this.peek() & 0xc0) == 0x80) {
+                        this.advance();
+                    }
+                    this.reporter.error(this.line, "Unexpected character.");
                 }
             }
         }
@@ -102,12 +87,53 @@ public class Lexer {
             this.advance();
         }
 
-        String text = this.source.substring(this.start, this.current);
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            type = TokenType.IDENTIFIER;
+        this.addToken(this.identifierType());
+    }
+
+    public TokenType identifierType() {
+        return switch (this.source.at(this.start)) {
+            case 'a' -> this.checkKeyword(1, "nd", TokenType.AND);
+            case 'c' -> this.checkKeyword(1, "lass", TokenType.CLASS);
+            case 'e' -> this.checkKeyword(1, "lse", TokenType.ELSE);
+            case 'f' -> {
+                if (this.current - this.start > 1) {
+                    yield switch (this.source.at(this.start + 1)) {
+                        case 'a' -> this.checkKeyword(2, "lse", TokenType.FALSE);
+                        case 'o' -> this.checkKeyword(2, "r", TokenType.FOR);
+                        case 'u' -> this.checkKeyword(2, "n", TokenType.FUN);
+                        default -> TokenType.IDENTIFIER;
+                    };
+                }
+                yield TokenType.IDENTIFIER;
+            }
+            case 'i' -> this.checkKeyword(1, "f", TokenType.IF);
+            case 'n' -> this.checkKeyword(1, "il", TokenType.NIL);
+            case 'o' -> this.checkKeyword(1, "r", TokenType.OR);
+            case 'p' -> this.checkKeyword(1, "rint", TokenType.PRINT);
+            case 'r' -> this.checkKeyword(1, "eturn", TokenType.RETURN);
+            case 's' -> this.checkKeyword(1, "uper", TokenType.SUPER);
+            case 't' -> {
+                if (this.current - this.start > 1) {
+                    yield switch (this.source.at(this.start + 1)) {
+                        case 'h' -> this.checkKeyword(2, "is", TokenType.THIS);
+                        case 'r' -> this.checkKeyword(2, "ue", TokenType.TRUE);
+                        default -> TokenType.IDENTIFIER;
+                    };
+                }
+                yield TokenType.IDENTIFIER;
+            }
+            case 'v' -> this.checkKeyword(1, "ar", TokenType.VAR);
+            case 'w' -> this.checkKeyword(1, "hile", TokenType.WHILE);
+            default -> TokenType.IDENTIFIER;
+        };
+    }
+
+    public TokenType checkKeyword(int offset, String rest, TokenType type) {
+        if (this.current - this.start == offset + rest.length()
+                && this.source.startsWith(rest, this.start + offset)) {
+            return type;
         }
-        this.addToken(type);
+        return TokenType.IDENTIFIER;
     }
 
     public void number() {
@@ -125,7 +151,37 @@ public class Lexer {
             }
         }
 
-        this.addToken(TokenType.NUMBER, Double.parseDouble(this.source.substring(this.start, this.current)));
+        this.addToken(TokenType.NUMBER);
+    }
+
+    // Digits with an optional fraction. When the digits fit in a long below 2^53 and there are at most 22 decimals, both
+    // operands of the division are exact doubles and the quotient is correctly rounded, so it matches parseDouble.
+    public static double number(Source source, int start, int end) {
+        long digits = 0;
+        int decimals = -1;
+        for (int i = start; i < end; ++i) {
+            int c = source.at(i);
+            if (c == '.') {
+                decimals = 0;
+                continue;
+            }
+
+            digits = digits * 10 + (c - '0');
+            if (digits >= 1L << 53) {
+                return Double.parseDouble(source.text(start, end));
+            }
+            if (decimals >= 0) {
+                ++decimals;
+            }
+        }
+
+        if (decimals <= 0) {
+            return digits;
+        }
+        if (decimals > 22) {
+            return Double.parseDouble(source.text(start, end));
+        }
+        return digits / POWERS_OF_TEN[decimals];
     }
 
     public void string() {
@@ -137,16 +193,14 @@ public class Lexer {
         }
 
         if (this.isAtEnd()) {
-            Lox.error(this.line, "Unterminated string.");
+            this.reporter.error(this.line, "Unterminated string.");
             return;
         }
 
         // The closing ".
         this.advance();
 
-        // Trim the surrounding quotes.
-        String value = this.source.substring(this.start + 1, this.current - 1);
-        this.addToken(TokenType.STRING, value);
+        this.addToken(TokenType.STRING);
     }
 
     public boolean match(char expected) {
@@ -154,7 +208,7 @@ public class Lexer {
             return false;
         }
 
-        if (this.source.charAt(this.current) != expected) {
+        if (this.source.at(this.current) != expected) {
             return false;
         }
 
@@ -166,14 +220,14 @@ public class Lexer {
         if (this.isAtEnd()) {
             return '\0';
         }
-        return this.source.charAt(this.current);
+        return (char) this.source.at(this.current);
     }
 
     public char peekNext() {
-        if (this.current + 1 >= this.source.length()) {
+        if (this.current + 1 >= this.source.length) {
             return '\0';
         }
-        return this.source.charAt(this.current + 1);
+        return (char) this.source.at(this.current + 1);
     }
 
     public boolean isAlpha(char c) {
@@ -191,19 +245,14 @@ public class Lexer {
     }
 
     public boolean isAtEnd() {
-        return this.current >= this.source.length();
+        return this.current >= this.source.length;
     }
 
     public char advance() {
-        return this.source.charAt(this.current++);
+        return (char) this.source.at(this.current++);
     }
 
     public void addToken(TokenType type) {
-        this.addToken(type, null);
-    }
-
-    public void addToken(TokenType type, Object literal) {
-        String text = this.source.substring(this.start, this.current);
-        this.tokens.add(new Token(type, text, literal, line));
+        this.tokens.add(type, this.start, this.current - this.start, this.line);
     }
 }
@@ -3,45 +3,124 @@ package io.portfolio.ewhitaker.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
 
 import io.portfolio.ewhitaker.Main;
 
 public class Lox {
-    public static final Evaluator evaluator = new Evaluator();
-
-    public static boolean hadError = false;
-    public static boolean hadRuntimeError = false;
-
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(Main.EXIT_USAGE);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        LoxEngine.Backend backend = LoxEngine.Backend.EVALUATOR;
+        boolean optimize = false;
+        ScriptCache cache = null;
+        boolean batch = false;
+        Path serve = null;
+        Path connect = null;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        String path = null;
+        for (String arg : args) {
+            if (arg.equals("--vm")) {
+                backend = LoxEngine.Backend.VM;
+            } else if (arg.equals("--jit")) {
+                backend = LoxEngine.Backend.JIT;
+            } else if (arg.equals("--nodes")) {
+                backend = LoxEngine.Backend.NODES;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--cache")) {
+                cache = new ScriptCache(ScriptCache.defaultDirectory());
+            } else if (arg.startsWith("--cache=")) {
+                cache = new ScriptCache(Paths.get(arg.substring("--cache=".length())));
+            } else if (arg.equals("--serve")) {
+                serve = Daemon.defaultSocket();
+            } else if (arg.startsWith("--serve=")) {
+                serve = Paths.get(arg.substring("--serve=".length()));
+            } else if (arg.equals("--connect")) {
+                connect = Daemon.defaultSocket();
+            } else if (arg.startsWith("--connect=")) {
+                connect = Paths.get(arg.substring("--connect=".length()));
+            } else if (arg.equals("--batch")) {
+                batch = true;
+            } else if (arg.matches("--jobs=[1-9][0-9]{0,3}")) {
+                jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+            } else if (path == null && !arg.startsWith("--")) {
+                path = arg;
+            } else {
+                usage();
+            }
+        }
+
+        if (connect != null) {
+            runClient(connect, path);
+        } else if (serve != null) {
+            if (path != null) {
+                usage();
+            }
+            runDaemon(new LoxEngine(backend, optimize, cache), serve, jobs);
+        } else if (batch) {
+            if (path == null) {
+                usage();
+            }
+            runBatch(new LoxEngine(backend, optimize, cache), Paths.get(path), jobs);
+        } else if (path != null) {
+            runFile(new LoxEngine(backend, optimize, cache), path);
         } else {
-            runPrompt();
+            runPrompt(new LoxEngine(backend, optimize, null));
+        }
+    }
+
+    public static void usage() {
+        System.out.println(
+                "Usage: jlox [--vm | --nodes | --jit] [--optimize] [--cache[=dir]] [script]\n"
+                        + "       jlox [--vm | --nodes | --jit] [--optimize] [--cache[=dir]] --batch [--jobs=n] "
+                        + "directory | manifest\n"
+                        + "       jlox [--vm | --nodes | --jit] [--optimize] [--cache[=dir]] --serve[=socket] [--jobs=n]\n"
+                        + "       jlox --connect[=socket] [script]"
+        );
+        System.exit(Main.EXIT_USAGE);
+    }
+
+    public static void runBatch(LoxEngine engine, Path path, int jobs) throws IOException {
+        Batch batch = new Batch(engine, jobs);
+        System.exit(batch.run(Batch.scripts(path), System.out));
+    }
+
+    public static void runDaemon(LoxEngine engine, Path socket, int jobs) {
+        try {
+            new Daemon(engine, socket, jobs).serve();
+        } catch (IOException error) {
+            System.err.println(error.getMessage());
+            System.exit(Main.EXIT_UNAVAILABLE);
         }
     }
 
-    public static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+    // Without a script, the source is read from standard input and sent whole.
+    public static void runClient(Path socket, String path) throws IOException {
+        if (path != null) {
+            System.exit(DaemonClient.run(socket, Daemon.PATH, Paths.get(path).toAbsolutePath().toString()));
+        }
+        String source = new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
+        System.exit(DaemonClient.run(socket, Daemon.SOURCE, source));
+    }
+
+    public static void runFile(LoxEngine engine, String path) throws IOException {
+        LoxContext context = engine.createContext(System.out, System.err);
+        context.run(Source.map(Paths.get(path)));
 
         // Indicate an error in the exit code.
-        if (hadError) {
+        if (context.reporter.hadError) {
             System.exit(Main.EXIT_DATA_ERROR);
         }
 
-        if (hadRuntimeError) {
+        if (context.reporter.hadRuntimeError) {
             System.exit(Main.EXIT_SOFTWARE);
         }
     }
 
-    public static void runPrompt() throws IOException {
+    public static void runPrompt(LoxEngine engine) throws IOException {
+        LoxContext context = engine.createContext(System.out, System.err);
+        context.keepTasks = true;
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
 
@@ -51,52 +130,9 @@ public class Lox {
             if (line == null) {
                 break;
             }
-            run(line);
-            hadError = false;
+            context.run(new Source(line));
+            context.reporter.hadError = false;
         }
-    }
-
-    public static void run(String source) {
-        Lexer lexer = new Lexer(source);
-        List<Token> tokens = lexer.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        // Stop if there was a syntax error.
-        if (hadError) {
-            return;
-        }
-
-        Resolver resolver = new Resolver(evaluator);
-        resolver.resolve(statements);
-
-        // Stop if there was a resolution error.
-        if (hadError) {
-            return;
-        }
-
-        evaluator.evaluate(statements);
-    }
-
-    public static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    public static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
-    }
-
-    public static void error(Token token, String message) {
-        if (token.type() == TokenType.EOF) {
-            report(token.line(), " at end", message);
-        } else {
-            report(token.line(), " at '" + token.lexeme() + "'", message);
-        }
-    }
-
-    public static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line() + "]");
-        hadRuntimeError = true;
+        context.stopTasks();
     }
 }
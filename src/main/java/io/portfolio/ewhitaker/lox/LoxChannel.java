@@ -0,0 +1,85 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A bounded queue between tasks. send() blocks while it is full and receive() while it is empty. Once closed, sends
+// fail and receives drain what is left and then return nil. A lock rather than synchronized, since a virtual thread
+// blocked in a monitor holds on to its carrier thread.
+public class LoxChannel {
+    public final Object[] buffer;
+    public int head = 0;
+    public int count = 0;
+    public boolean closed = false;
+    public final ReentrantLock lock = new ReentrantLock();
+    public final Condition notEmpty = this.lock.newCondition();
+    public final Condition notFull = this.lock.newCondition();
+
+    public LoxChannel(int capacity) {
+        this.buffer = new Object[capacity];
+    }
+
+    public void send(Object value) {
+        this.lock.lock();
+        try {
+            while (this.count == this.buffer.length && !this.closed) {
+                this.await(this.notFull);
+            }
+            if (this.closed) {
+                throw new RuntimeError(null, "Can't send on a closed channel.");
+            }
+
+            this.buffer[(this.head + this.count) % this.buffer.length] = value;
+            ++this.count;
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public Object receive() {
+        this.lock.lock();
+        try {
+            while (this.count == 0 && !this.closed) {
+                this.await(this.notEmpty);
+            }
+            if (this.count == 0) {
+                return null;
+            }
+
+            Object value = this.buffer[this.head];
+            this.buffer[this.head] = null;
+            this.head = (this.head + 1) % this.buffer.length;
+            --this.count;
+            this.notFull.signal();
+            return value;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void await(Condition condition) {
+        try {
+            condition.await();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while waiting on a channel.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
@@ -1,46 +1,48 @@
 package io.portfolio.ewhitaker.lox;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class LoxClass implements LoxCallable {
     public final LoxClass superclass;
     public final String name;
-    public final Map<String, LoxFunction> methods;
+    // Every method an instance responds to, inherited ones included, so lookups never walk the superclass chain.
+    public final Map<Symbol, LoxFunction> methods;
+    public final LoxFunction initializer;
+    public final Shape shape = new Shape();
+    public int instanceSize = 0;
 
-    public LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+    public LoxClass(String name, LoxClass superclass, Map<Symbol, LoxFunction> methods) {
         this.superclass = superclass;
         this.name = name;
-        this.methods = methods;
-    }
-
-    public LoxFunction findMethod(String name) {
-        if (methods.containsKey(name)) {
-            return methods.get(name);
-        }
 
-        if (this.superclass != null) {
-            return this.superclass.findMethod(name);
+        if (superclass == null) {
+            this.methods = methods;
+        } else {
+            this.methods = new HashMap<>(superclass.methods);
+            this.methods.putAll(methods);
         }
+        this.initializer = this.methods.get(Symbol.INIT);
+    }
 
-        return null;
+    public LoxFunction findMethod(Symbol name) {
+        return this.methods.get(name);
     }
 
     @Override
     public int arity() {
-        LoxFunction initializer = this.findMethod("init");
-        if (initializer == null) {
+        if (this.initializer == null) {
             return 0;
         }
-        return initializer.arity();
+        return this.initializer.arity();
     }
 
     @Override
     public Object call(Evaluator evaluator, List<Object> arguments) {
         LoxInstance instance = new LoxInstance(this);
-        LoxFunction initializer = this.findMethod("init");
-        if (initializer != null) {
-            initializer.bind(instance).call(evaluator, arguments);
+        if (this.initializer != null) {
+            this.initializer.invoke(evaluator, instance, arguments.toArray());
         }
         return instance;
     }
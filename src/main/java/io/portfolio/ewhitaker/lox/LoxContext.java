@@ -0,0 +1,163 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.portfolio.ewhitaker.lox.jit.Jit;
+import io.portfolio.ewhitaker.lox.node.NodeInterpreter;
+import io.portfolio.ewhitaker.lox.vm.VM;
+
+// An isolated place to run scripts, with its own globals, output and error state in its own instance of the engine's
+// backend. A context runs one script at a time, but contexts share nothing that running changes, so separate threads
+// can run separate contexts at once, on the same program or on different ones.
+public class LoxContext {
+    // How long the end of a run waits for its interrupted tasks to stop.
+    public static final long TASK_STOP_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+    public final LoxEngine engine;
+    public final PrintStream out;
+    public final Reporter reporter;
+    public final Evaluator evaluator;
+    public final VM vm;
+    public final NodeInterpreter nodes;
+    // Stands for the current run in the inline caches of the tree it runs, which other contexts may be running too.
+    public Object execution = new Object();
+    // The tasks the current run has spawned that are still running.
+    public final Set<LoxTask> tasks = ConcurrentHashMap.newKeySet();
+    // Whether tasks outlive the run that spawned them, until stopTasks is called. The REPL runs each line on its own,
+    // and a task spawned on one line may be joined on the next.
+    public boolean keepTasks = false;
+
+    public LoxContext(LoxEngine engine, PrintStream out, PrintStream err) {
+        this.engine = engine;
+        this.out = out;
+        this.reporter = new Reporter(err);
+
+        this.vm = engine.backend == LoxEngine.Backend.VM ? new VM(this) : null;
+        this.nodes = engine.backend == LoxEngine.Backend.NODES ? new NodeInterpreter(this) : null;
+        this.evaluator = this.vm == null && this.nodes == null ? new Evaluator(this) : null;
+        if (engine.backend == LoxEngine.Backend.JIT) {
+            this.evaluator.jit = new Jit();
+        }
+    }
+
+    public Globals globals() {
+        if (this.vm != null) {
+            return this.vm.globals;
+        } else if (this.nodes != null) {
+            return this.nodes.globals;
+        }
+        return this.evaluator.globals;
+    }
+
+    // Defines a global from Java. Numbers become doubles, the only kind Lox has, and a value Lox has no type for is
+    // refused.
+    public void bind(String name, Object value) {
+        if (value instanceof Number number) {
+            value = number.doubleValue();
+        } else if (value instanceof CharSequence text) {
+            value = text.toString();
+        } else if (value != null && !(value instanceof Boolean)) {
+            throw new IllegalArgumentException("Can't bind a " + value.getClass().getName() + " to '" + name + "'.");
+        }
+        this.globals().define(name, value);
+    }
+
+    // Undefines the given globals and defines the natives again, in case the script assigned over them, so that the
+    // context can run another script as though it were new. A script only defines globals with its top-level
+    // declarations, so those and whatever was bound are enough, and this costs far less than a new context.
+    public void reset(Iterable<Symbol> names) {
+        Globals globals = this.globals();
+        for (Symbol name : names) {
+            globals.undefine(name);
+        }
+
+        if (this.vm != null) {
+            this.vm.defineNatives();
+        } else {
+            Natives.define(globals, this);
+        }
+        if (this.evaluator != null) {
+            this.evaluator.frame = null;
+        }
+        this.reporter.hadError = false;
+        this.reporter.hadRuntimeError = false;
+    }
+
+    public Program compile(Source source) {
+        return this.engine.compile(source, this.reporter);
+    }
+
+    public void run(Source source) {
+        Program program = this.compile(source);
+        if (program != null) {
+            this.run(program);
+        }
+    }
+
+    public void run(Program program) {
+        if (program.engine() != this.engine) {
+            throw new IllegalArgumentException("Can't run a program compiled by another engine.");
+        }
+
+        this.execution = new Object();
+        try {
+            if (this.vm != null) {
+                this.vm.interpret(program.statements());
+            } else if (this.nodes != null) {
+                this.nodes.interpret(program.statements());
+            } else if (this.evaluator.jit != null) {
+                this.evaluator.jit.execute(this.evaluator, program.statements());
+            } else {
+                this.evaluator.evaluate(program.statements());
+            }
+        } finally {
+            if (!this.keepTasks) {
+                this.stopTasks();
+            }
+        }
+    }
+
+    // Interrupts the tasks the run or the session left running, again for any they spawned meanwhile, until they have
+    // all ended or TASK_STOP_TIMEOUT has passed. One that still hasn't stopped by then is left to finish on its own. A
+    // caller that was interrupted itself, such as a daemon request whose client hung up, still waits, and is left
+    // interrupted afterwards.
+    public void stopTasks() {
+        boolean interrupted = Thread.interrupted();
+        long deadline = System.nanoTime() + TASK_STOP_TIMEOUT;
+        while (!this.tasks.isEmpty() && System.nanoTime() < deadline) {
+            for (LoxTask task : this.tasks) {
+                task.stop();
+            }
+
+            for (LoxTask task : this.tasks) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedJoin(task.thread, remaining);
+                } catch (InterruptedException error) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run(PreparedScript script) {
+        if (this.vm != null) {
+            for (Symbol name : script.globals) {
+                this.vm.globals.indexOf(name);
+            }
+            this.vm.interpret(script.function);
+        } else {
+            this.run(script.program);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.portfolio.ewhitaker.lox.vm.Compiler;
+import io.portfolio.ewhitaker.lox.vm.Obj;
+
+// How scripts are compiled and which backend runs them. An engine holds that configuration and the symbols its
+// scripts use, which are safe to share, so it can compile on any number of threads and hand out any number of
+// contexts. The symbols grow with every new name the engine compiles, so something that compiles an open-ended stream
+// of unrelated scripts should use a fresh engine for each rather than one for its whole life.
+public class LoxEngine {
+    public enum Backend {
+        EVALUATOR,
+        VM,
+        NODES,
+        JIT
+    }
+
+    public final Backend backend;
+    public final boolean optimize;
+    public final ScriptCache cache;
+    public final SymbolTable symbols = new SymbolTable();
+
+    public LoxEngine(Backend backend, boolean optimize, ScriptCache cache) {
+        this.backend = backend;
+        this.optimize = optimize;
+        this.cache = cache;
+    }
+
+    // An engine like this one with none of its symbols.
+    public LoxEngine fresh() {
+        return new LoxEngine(this.backend, this.optimize, this.cache);
+    }
+
+    public LoxContext createContext(PrintStream out, PrintStream err) {
+        return new LoxContext(this, out, err);
+    }
+
+    // Returns null if the source does not compile, having reported why. The reporter's hadError describes this
+    // compile alone afterwards.
+    public Program compile(Source source, Reporter reporter) {
+        reporter.hadError = false;
+
+        Path entry = this.cache == null ? null : this.cache.entry(source);
+        List<Stmt> statements = entry == null ? null : this.cache.load(entry, source, this.symbols);
+        if (statements == null) {
+            Lexer lexer = new Lexer(source, this.symbols, reporter);
+            Tokens tokens = lexer.scanTokens();
+            Parser parser = new Parser(tokens, reporter);
+            statements = parser.parse();
+
+            // Stop if there was a syntax error.
+            if (reporter.hadError) {
+                return null;
+            }
+
+            Resolver resolver = new Resolver(this.symbols, reporter);
+            resolver.resolve(statements);
+
+            // Stop if there was a resolution error.
+            if (reporter.hadError) {
+                return null;
+            }
+
+            if (entry != null) {
+                this.cache.store(entry, source, statements);
+            }
+        }
+
+        if (this.optimize) {
+            statements = new Optimizer().optimize(statements);
+        }
+        return new Program(this, statements);
+    }
+
+    // Compiles for PreparedScript.execute, and for the VM compiles to bytecode as well. Returns null if the source
+    // does not compile, having reported why.
+    public PreparedScript prepare(Source source, Reporter reporter) {
+        Program program = this.compile(source, reporter);
+        if (program == null) {
+            return null;
+        }
+
+        List<Symbol> defines = new ArrayList<>();
+        for (Stmt statement : program.statements()) {
+            if (statement instanceof Stmt.Var var) {
+                defines.add(var.name().symbol());
+            } else if (statement instanceof Stmt.Function function) {
+                defines.add(function.name().symbol());
+            } else if (statement instanceof Stmt.Class klass) {
+                defines.add(klass.name().symbol());
+            }
+        }
+
+        if (this.backend != Backend.VM) {
+            return new PreparedScript(this, program, null, null, defines.toArray(new Symbol[0]));
+        }
+
+        Globals globals = new Globals(this.symbols);
+        Obj.Function function = Compiler.compile(globals, reporter, program.statements());
+        if (function == null) {
+            return null;
+        }
+
+        List<Symbol> names = new ArrayList<>();
+        for (Symbol name : globals.names) {
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return new PreparedScript(
+                this, program, function, names.toArray(new Symbol[0]), defines.toArray(new Symbol[0])
+        );
+    }
+}
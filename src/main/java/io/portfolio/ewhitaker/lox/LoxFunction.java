@@ -4,20 +4,26 @@ import java.util.List;
 
 public class LoxFunction implements LoxCallable {
     public final Stmt.Function declaration;
-    public final Environment closure;
+    public final Frame closure;
+    // Methods find "this" in slot zero of their own frame. A method only becomes a bound LoxFunction with a receiver
+    // when it is used as a value; calls through a property pass the receiver straight to invoke.
+    public final LoxInstance receiver;
 
     public final boolean isInitializer;
 
-    public LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    public LoxFunction(Stmt.Function declaration, Frame closure, boolean isInitializer) {
+        this(declaration, closure, isInitializer, null);
+    }
+
+    public LoxFunction(Stmt.Function declaration, Frame closure, boolean isInitializer, LoxInstance receiver) {
         this.isInitializer = isInitializer;
         this.closure = closure;
         this.declaration = declaration;
+        this.receiver = receiver;
     }
 
     public LoxFunction bind(LoxInstance instance) {
-        Environment environment = new Environment(this.closure);
-        environment.define("this", instance);
-        return new LoxFunction(declaration, environment, this.isInitializer);
+        return new LoxFunction(this.declaration, this.closure, this.isInitializer, instance);
     }
 
     @Override
@@ -27,25 +33,29 @@ public class LoxFunction implements LoxCallable {
 
     @Override
     public Object call(Evaluator evaluator, List<Object> arguments) {
-        Environment environment = new Environment(this.closure);
-        for (int i = 0; i < this.declaration.params().size(); ++i) {
-            environment.define(this.declaration.params().get(i).lexeme(), arguments.get(i));
+        return this.invoke(evaluator, this.receiver, arguments.toArray());
+    }
+
+    public Object invoke(Evaluator evaluator, LoxInstance receiver, Object[] arguments) {
+        Frame frame = new Frame(this.closure, receiver == null ? arguments.length : arguments.length + 1);
+        if (receiver != null) {
+            frame.define(receiver);
+        }
+        for (Object argument : arguments) {
+            frame.define(argument);
         }
 
-        try {
-            evaluator.executeBlock(this.declaration.body(), environment);
-        } catch (Return returnValue) {
-            if (this.isInitializer) {
-                return this.closure.getAt(0, "this");
-            }
-            return returnValue.Value;
+        Object value = null;
+        if (evaluator.executeBlock(this.declaration.body(), frame) == Completion.RETURN) {
+            value = evaluator.returnValue;
+            evaluator.returnValue = null;
         }
 
         if (this.isInitializer) {
-            return this.closure.getAt(0, "this");
+            return receiver;
         }
 
-        return null;
+        return value;
     }
 
     @Override
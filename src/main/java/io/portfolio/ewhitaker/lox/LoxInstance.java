@@ -1,22 +1,25 @@
 package io.portfolio.ewhitaker.lox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class LoxInstance {
     public LoxClass klass;
-    public final Map<String, Object> fields = new HashMap<>();
+    public Shape shape;
+    public Object[] values;
 
     public LoxInstance(LoxClass klass) {
         this.klass = klass;
+        this.shape = klass.shape;
+        this.values = new Object[klass.instanceSize];
     }
 
     public Object get(Token name) {
-        if (this.fields.containsKey(name.lexeme())) {
-            return this.fields.get(name.lexeme());
+        int index = this.shape.indexOf(name.symbol());
+        if (index >= 0) {
+            return this.values[index];
         }
 
-        LoxFunction method = this.klass.findMethod(name.lexeme());
+        LoxFunction method = this.klass.findMethod(name.symbol());
         if (method != null) {
             return method.bind(this);
         }
@@ -25,7 +28,29 @@ public class LoxInstance {
     }
 
     public void set(Token name, Object value) {
-        this.fields.put(name.lexeme(), value);
+        int index = this.shape.indexOf(name.symbol());
+        if (index >= 0) {
+            this.values[index] = value;
+        } else {
+            Shape next = this.shape.with(name.symbol());
+            this.put(next, next.size() - 1, value);
+        }
+    }
+
+    public void put(Shape shape, int index, Object value) {
+        if (shape != this.shape) {
+            this.shape = shape;
+            int size = shape.size();
+            if (size > this.values.length) {
+                this.values = Arrays.copyOf(this.values, size);
+            }
+
+            // Later instances of the class start out with room for every field this one has needed.
+            if (size > this.klass.instanceSize) {
+                this.klass.instanceSize = size;
+            }
+        }
+        this.values[index] = value;
     }
 
     @Override
@@ -0,0 +1,121 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+// A function running on a thread of its own, started by spawn() and waited for by join(). Each task has its own
+// evaluator, so its own frames, but it shares everything its function can reach with every other task: globals,
+// closed-over variables and instances. What one task sees of another's writes is settled by these edges alone, each
+// of which makes everything before it visible to everything after it:
+//
+// - spawn(f), to the start of f;
+// - the end of a task, to join() of it returning;
+// - send(c, v), to the receive(c) that returns v;
+// - close(c), to a receive(c) that returns nil because c is closed.
+//
+// Anything else is a race. A task may see another's writes late or not at all, and two tasks adding fields to one
+// instance at once may lose a field or fail with an internal error. The interpreter's own shared structures, such as
+// symbols, shapes, inline caches and compiled code, stay consistent whatever the script does.
+//
+// A runtime error ends the task and is thrown again by join(), reported at the line in the task where it happened.
+// Tasks don't outlive the run that spawned them. Each is registered with its context, and when the run ends, however
+// it ends, the context interrupts whatever is still running: a blocked join, send or receive fails, and a loop stops
+// at the top of its next iteration. The context then waits a bounded time for them to finish. A task stopped this way
+// fails join() with "Task was stopped." The REPL is the exception: its lines are runs of one session, so its tasks
+// live until it ends.
+//
+// The VM has channels but not tasks, and its spawn fails with a runtime error; see VM.defineNatives.
+public class LoxTask {
+    public static final ThreadFactory THREADS = threads();
+
+    // Thrown from a loop on an interrupted thread. Not a RuntimeError, so nothing in Lox reports or catches it, and it
+    // unwinds the task to its thread's end.
+    public static final class Cancelled extends RuntimeException {
+        public Cancelled() {
+            super("Task cancelled.", null, false, false);
+        }
+    }
+
+    public final Thread thread;
+    // Written by the task before it ends, and read only after joining it.
+    public Object value = null;
+    public Throwable failure = null;
+    // Set before the end of a run interrupts the task, so that join() can tell that whatever it failed with came from
+    // being stopped: Cancelled from a loop, or the error of whatever it was blocked in.
+    public volatile boolean stopped = false;
+
+    public LoxTask(LoxCallable function, Evaluator evaluator, LoxContext context) {
+        this.thread = THREADS.newThread(() -> {
+            try {
+                this.value = function.call(evaluator, List.of());
+            } catch (RuntimeException | Error failure) {
+                this.failure = failure;
+            } finally {
+                context.tasks.remove(this);
+            }
+        });
+    }
+
+    // Registered before it starts, so that a run that ends at once still finds it.
+    public static LoxTask spawn(LoxCallable function, Evaluator evaluator, LoxContext context) {
+        LoxTask task = new LoxTask(function, evaluator, context);
+        context.tasks.add(task);
+        task.thread.start();
+        return task;
+    }
+
+    // Called by every backend at the top of each loop iteration, so that a task that never blocks still stops once it
+    // is interrupted.
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new Cancelled();
+        }
+    }
+
+    // Virtual threads where the JVM has them, so that thousands of tasks blocked on channels cost little more than
+    // their frames. The interpreter is built for 17, where they don't exist yet, so they are looked up reflectively
+    // and tasks get daemon platform threads instead.
+    public static ThreadFactory threads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException unavailable) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, "lox-task");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    public void stop() {
+        this.stopped = true;
+        this.thread.interrupt();
+    }
+
+    public Object join() {
+        try {
+            this.thread.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while joining a task.");
+        }
+
+        // Stopped at the end of an earlier run, and joined by a later one through a global it left behind.
+        if (this.failure != null && (this.stopped || this.failure instanceof Cancelled)) {
+            throw new RuntimeError(null, "Task was stopped.");
+        } else if (this.failure instanceof RuntimeException error) {
+            throw error;
+        } else if (this.failure instanceof Error error) {
+            throw error;
+        }
+        return this.value;
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,66 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.List;
+
+// The functions every context's globals start out with. A native that fails throws a RuntimeError without a token,
+// and the call site blames its own.
+public class Natives {
+    public interface Body {
+        Object call(Evaluator evaluator, List<Object> arguments);
+    }
+
+    public record Native(int arity, Body body) implements LoxCallable {
+        @Override
+        public Object call(Evaluator evaluator, List<Object> arguments) {
+            return this.body.call(evaluator, arguments);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    }
+
+    public static void define(Globals globals, LoxContext context) {
+        globals.define("clock", new Native(0, (evaluator, arguments) -> System.currentTimeMillis() / 1000.0));
+
+        globals.define("spawn", new Native(1, (evaluator, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxCallable function) || function.arity() != 0) {
+                throw new RuntimeError(null, "Can only spawn a function that takes no arguments.");
+            }
+            // The node interpreter has no evaluator, and its functions need none.
+            return LoxTask.spawn(function, evaluator == null ? null : new Evaluator(evaluator), context);
+        }));
+        globals.define("join", new Native(1, (evaluator, arguments) -> task(arguments.get(0)).join()));
+
+        globals.define("channel", new Native(1, (evaluator, arguments) -> {
+            if (!(arguments.get(0) instanceof Double capacity) || capacity < 1 || capacity != Math.floor(capacity)) {
+                throw new RuntimeError(null, "Channel capacity must be a positive integer.");
+            }
+            return new LoxChannel((int) Math.min(capacity, Integer.MAX_VALUE));
+        }));
+        globals.define("send", new Native(2, (evaluator, arguments) -> {
+            channel(arguments.get(0)).send(arguments.get(1));
+            return null;
+        }));
+        globals.define("receive", new Native(1, (evaluator, arguments) -> channel(arguments.get(0)).receive()));
+        globals.define("close", new Native(1, (evaluator, arguments) -> {
+            channel(arguments.get(0)).close();
+            return null;
+        }));
+    }
+
+    public static LoxTask task(Object value) {
+        if (!(value instanceof LoxTask task)) {
+            throw new RuntimeError(null, "Can only join a task.");
+        }
+        return task;
+    }
+
+    public static LoxChannel channel(Object value) {
+        if (!(value instanceof LoxChannel channel)) {
+            throw new RuntimeError(null, "Operand must be a channel.");
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,237 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rewrites a resolved tree: folds constant expressions and drops groupings, branches that can never run, and blocks
+// that declare nothing. None of that moves a variable, so the bindings the resolver filled in still hold.
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    // A block that declares nothing runs inline, so splicing its statements into the enclosing list changes nothing
+    // but the work of entering it. That includes the block a desugared for loop wraps around its body and increment.
+    public List<Stmt> optimize(List<Stmt> statements) {
+        List<Stmt> result = new ArrayList<>();
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Block block && !Resolver.declares(block.statements())) {
+                result.addAll(this.optimize(block.statements()));
+                continue;
+            }
+
+            Stmt optimized = this.optimize(statement);
+            if (optimized != null) {
+                result.add(optimized);
+            }
+        }
+        return result;
+    }
+
+    // Returns null when the statement can be dropped.
+    public Stmt optimize(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    public Expr optimize(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // Loop and branch bodies need a statement even when theirs was dropped.
+    public Stmt body(Stmt stmt) {
+        Stmt optimized = this.optimize(stmt);
+        if (optimized != null) {
+            return optimized;
+        }
+
+        Scope scope = new Scope();
+        scope.inline = true;
+        return new Stmt.Block(List.of(), scope);
+    }
+
+    // Anything that would be a runtime error is left for the engine to report.
+    public static Object fold(TokenType operator, Object left, Object right) {
+        if (operator == TokenType.BANG_EQUAL) {
+            return !Evaluator.isEqual(left, right);
+        } else if (operator == TokenType.EQUAL_EQUAL) {
+            return Evaluator.isEqual(left, right);
+        }
+
+        if (left instanceof String l && right instanceof String r && operator == TokenType.PLUS) {
+            return l + r;
+        }
+
+        if (!(left instanceof Double l && right instanceof Double r)) {
+            return null;
+        }
+
+        return switch (operator) {
+            case GREATER -> l > r;
+            case GREATER_EQUAL -> l >= r;
+            case LESS -> l < r;
+            case LESS_EQUAL -> l <= r;
+            case MINUS -> l - r;
+            case PLUS -> l + r;
+            case SLASH -> l / r;
+            case STAR -> l * r;
+            default -> null;
+        };
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        return new Stmt.Block(this.optimize(stmt.statements()), stmt.scope());
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        Expr.Variable superclass = null;
+        if (stmt.superclass() != null) {
+            superclass = (Expr.Variable) this.optimize(stmt.superclass());
+        }
+
+        List<Stmt.Function> methods = new ArrayList<>();
+        for (Stmt.Function method : stmt.methods()) {
+            methods.add((Stmt.Function) this.optimize(method));
+        }
+        return new Stmt.Class(stmt.name(), superclass, methods);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = this.optimize(stmt.expression());
+        if (expression instanceof Expr.Literal) {
+            return null;
+        }
+        return new Stmt.Expression(expression);
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        return new Stmt.Function(stmt.name(), stmt.params(), this.optimize(stmt.body()));
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = this.optimize(stmt.condition());
+        if (condition instanceof Expr.Literal literal) {
+            if (Evaluator.isTruthy(literal.value())) {
+                return this.optimize(stmt.thenBranch());
+            }
+            return stmt.elseBranch() == null ? null : this.optimize(stmt.elseBranch());
+        }
+
+        Stmt elseBranch = stmt.elseBranch() == null ? null : this.optimize(stmt.elseBranch());
+        return new Stmt.If(condition, this.body(stmt.thenBranch()), elseBranch);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        return new Stmt.Print(this.optimize(stmt.expression()));
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        return new Stmt.Return(stmt.keyword(), stmt.value() == null ? null : this.optimize(stmt.value()));
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        return new Stmt.Var(stmt.name(), stmt.initializer() == null ? null : this.optimize(stmt.initializer()));
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Expr condition = this.optimize(stmt.condition());
+        if (condition instanceof Expr.Literal literal && !Evaluator.isTruthy(literal.value())) {
+            return null;
+        }
+        return new Stmt.While(condition, this.body(stmt.body()));
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        return new Expr.Assign(expr.name(), this.optimize(expr.value()), expr.binding());
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = this.optimize(expr.left());
+        Expr right = this.optimize(expr.right());
+
+        if (left instanceof Expr.Literal l && right instanceof Expr.Literal r) {
+            Object value = fold(expr.operator().type(), l.value(), r.value());
+            if (value != null) {
+                return new Expr.Literal(value);
+            }
+        }
+        return new Expr.Binary(left, expr.operator(), right);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        List<Expr> arguments = new ArrayList<>();
+        for (Expr argument : expr.arguments()) {
+            arguments.add(this.optimize(argument));
+        }
+        return new Expr.Call(this.optimize(expr.callee()), expr.paren(), arguments);
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        return new Expr.Get(this.optimize(expr.object()), expr.name(), expr.cache());
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return this.optimize(expr.expression());
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = this.optimize(expr.left());
+        Expr right = this.optimize(expr.right());
+
+        if (left instanceof Expr.Literal literal) {
+            boolean isOr = expr.operator().type() == TokenType.OR;
+            return Evaluator.isTruthy(literal.value()) == isOr ? left : right;
+        }
+        return new Expr.Logical(left, expr.operator(), right);
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        return new Expr.Set(this.optimize(expr.object()), expr.name(), this.optimize(expr.value()), expr.cache());
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = this.optimize(expr.right());
+
+        if (right instanceof Expr.Literal literal) {
+            if (expr.operator().type() == TokenType.BANG) {
+                return new Expr.Literal(!Evaluator.isTruthy(literal.value()));
+            }
+            if (literal.value() instanceof Double value) {
+                return new Expr.Literal(-value);
+            }
+        }
+        return new Expr.Unary(expr.operator(), right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+}
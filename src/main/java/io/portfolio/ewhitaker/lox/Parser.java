@@ -1,17 +1,87 @@
 package io.portfolio.ewhitaker.lox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Parser {
     public static class ParserError extends RuntimeException {
     }
 
-    public final List<Token> tokens;
+    public enum Precedence {
+        NONE,
+        ASSIGNMENT,
+        OR,
+        AND,
+        EQUALITY,
+        COMPARISON,
+        TERM,
+        FACTOR,
+        UNARY,
+        CALL,
+        PRIMARY;
+
+        public static final Precedence[] VALUES = Precedence.values();
+
+        // The level of a left-associative operator's right operand.
+        public Precedence next() {
+            return VALUES[this.ordinal() + 1];
+        }
+    }
+
+    public interface Prefix {
+        Expr parse(Parser parser);
+    }
+
+    public interface Infix {
+        Expr parse(Parser parser, Expr left);
+    }
+
+    public record Rule(Prefix prefix, Infix infix, Precedence precedence) {
+    }
+
+    public static final Rule[] RULES = new Rule[Tokens.TYPES.length];
+
+    static {
+        Arrays.fill(RULES, new Rule(null, null, Precedence.NONE));
+
+        rule(TokenType.LEFT_PAREN, Parser::grouping, Parser::call, Precedence.CALL);
+        rule(TokenType.DOT, null, Parser::dot, Precedence.CALL);
+        rule(TokenType.MINUS, Parser::unary, Parser::binary, Precedence.TERM);
+        rule(TokenType.PLUS, null, Parser::binary, Precedence.TERM);
+        rule(TokenType.SLASH, null, Parser::binary, Precedence.FACTOR);
+        rule(TokenType.STAR, null, Parser::binary, Precedence.FACTOR);
+        rule(TokenType.BANG, Parser::unary, null, Precedence.NONE);
+        rule(TokenType.BANG_EQUAL, null, Parser::binary, Precedence.EQUALITY);
+        rule(TokenType.EQUAL, null, Parser::assignment, Precedence.ASSIGNMENT);
+        rule(TokenType.EQUAL_EQUAL, null, Parser::binary, Precedence.EQUALITY);
+        rule(TokenType.GREATER, null, Parser::binary, Precedence.COMPARISON);
+        rule(TokenType.GREATER_EQUAL, null, Parser::binary, Precedence.COMPARISON);
+        rule(TokenType.LESS, null, Parser::binary, Precedence.COMPARISON);
+        rule(TokenType.LESS_EQUAL, null, Parser::binary, Precedence.COMPARISON);
+        rule(TokenType.IDENTIFIER, Parser::variable, null, Precedence.NONE);
+        rule(TokenType.STRING, Parser::literal, null, Precedence.NONE);
+        rule(TokenType.NUMBER, Parser::literal, null, Precedence.NONE);
+        rule(TokenType.AND, null, Parser::logical, Precedence.AND);
+        rule(TokenType.FALSE, Parser::literal, null, Precedence.NONE);
+        rule(TokenType.NIL, Parser::literal, null, Precedence.NONE);
+        rule(TokenType.OR, null, Parser::logical, Precedence.OR);
+        rule(TokenType.SUPER, Parser::superExpr, null, Precedence.NONE);
+        rule(TokenType.THIS, Parser::thisExpr, null, Precedence.NONE);
+        rule(TokenType.TRUE, Parser::literal, null, Precedence.NONE);
+    }
+
+    public static void rule(TokenType type, Prefix prefix, Infix infix, Precedence precedence) {
+        RULES[type.ordinal()] = new Rule(prefix, infix, precedence);
+    }
+
+    public final Tokens tokens;
+    public final Reporter reporter;
     public int current = 0;
 
-    public Parser(List<Token> tokens) {
+    public Parser(Tokens tokens, Reporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
     }
 
     public List<Stmt> parse() {
@@ -24,7 +94,7 @@ public class Parser {
     }
 
     public Expr expression() {
-        return this.assignment();
+        return this.parsePrecedence(Precedence.ASSIGNMENT);
     }
 
     public Stmt declaration() {
@@ -54,7 +124,7 @@ public class Parser {
         Expr.Variable superclass = null;
         if (this.match(TokenType.LESS)) {
             this.consume(TokenType.IDENTIFIER, "Expect superclass name.");
-            superclass = new Expr.Variable(this.previous());
+            superclass = new Expr.Variable(this.previous(), new Binding());
         }
 
         this.consume(TokenType.LEFT_BRACE, "Expect '{' before class body.");
@@ -91,7 +161,7 @@ public class Parser {
         }
 
         if (this.match(TokenType.LEFT_BRACE)) {
-            return new Stmt.Block(this.block());
+            return new Stmt.Block(this.block(), new Scope());
         }
 
         return this.expressionStatement();
@@ -124,7 +194,7 @@ public class Parser {
 
         if (increment != null) {
             body = new Stmt.Block(
-                    List.of(body, new Stmt.Expression(increment))
+                    List.of(body, new Stmt.Expression(increment)), new Scope()
             );
         }
 
@@ -134,7 +204,7 @@ public class Parser {
         body = new Stmt.While(condition, body);
 
         if (initializer != null) {
-            body = new Stmt.Block(List.of(initializer, body));
+            body = new Stmt.Block(List.of(initializer, body), new Scope());
         }
 
         return body;
@@ -229,109 +299,64 @@ public class Parser {
         return statements;
     }
 
-    public Expr assignment() {
-        Expr expr = this.or();
-
-        if (this.match(TokenType.EQUAL)) {
-            Token equals = this.previous();
-            Expr value = this.assignment();
-
-            if (expr instanceof Expr.Variable variable) {
-                Token name = variable.name();
-                return new Expr.Assign(name, value);
-            } else if (expr instanceof Expr.Get get) {
-                return new Expr.Set(get.object(), get.name(), value);
-            }
-
-            error(equals, "Invalid assignment target.");
-        }
-
-        return expr;
-    }
-
-    public Expr or() {
-        Expr expr = this.and();
-
-        while (this.match(TokenType.OR)) {
-            Token operator = this.previous();
-            Expr right = this.and();
-            expr = new Expr.Logical(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    public Expr and() {
-        Expr expr = this.equality();
-
-        while (this.match(TokenType.AND)) {
-            Token operator = this.previous();
-            Expr right = this.equality();
-            expr = new Expr.Logical(expr, operator, right);
+    // Expressions are parsed by precedence climbing over a table of rules indexed by token type. A token's prefix rule
+    // parses an expression that starts with it, and its infix rule continues the expression to its left when the
+    // token binds at least as tightly as the level being parsed.
+    public Expr parsePrecedence(Precedence precedence) {
+        Rule rule = RULES[this.tokens.types[this.current]];
+        if (rule.prefix() == null) {
+            throw this.error(this.peek(), "Expect expression.");
         }
 
-        return expr;
-    }
+        ++this.current;
+        Expr expr = rule.prefix().parse(this);
 
-    public Expr equality() {
-        Expr expr = this.comparison();
+        for (;;) {
+            rule = RULES[this.tokens.types[this.current]];
+            if (precedence.compareTo(rule.precedence()) > 0) {
+                return expr;
+            }
 
-        while (this.match(TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL)) {
-            Token operator = this.previous();
-            Expr right = this.comparison();
-            expr = new Expr.Binary(expr, operator, right);
+            ++this.current;
+            expr = rule.infix().parse(this, expr);
         }
-
-        return expr;
     }
 
-    public Expr comparison() {
-        Expr expr = this.term();
+    public Expr assignment(Expr target) {
+        int equals = this.current - 1;
+        // Right-associative, so the value may itself be an assignment.
+        Expr value = this.parsePrecedence(Precedence.ASSIGNMENT);
 
-        while (this.match(TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL)) {
-            Token operator = this.previous();
-            Expr right = this.term();
-            expr = new Expr.Binary(expr, operator, right);
+        if (target instanceof Expr.Variable variable) {
+            Token name = variable.name();
+            return new Expr.Assign(name, value, new Binding());
+        } else if (target instanceof Expr.Get get) {
+            return new Expr.Set(get.object(), get.name(), value, new InlineCache());
         }
 
-        return expr;
+        this.error(this.tokens.token(equals), "Invalid assignment target.");
+        return target;
     }
 
-    public Expr term() {
-        Expr expr = this.factor();
-
-        while (this.match(TokenType.MINUS, TokenType.PLUS)) {
-            Token operator = this.previous();
-            Expr right = this.factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
+    public Expr logical(Expr left) {
+        Token operator = this.previous();
+        Expr right = this.parsePrecedence(RULES[operator.type().ordinal()].precedence().next());
+        return new Expr.Logical(left, operator, right);
     }
 
-    public Expr factor() {
-        Expr expr = this.unary();
-
-        while (this.match(TokenType.SLASH, TokenType.STAR)) {
-            Token operator = this.previous();
-            Expr right = this.unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
+    public Expr binary(Expr left) {
+        Token operator = this.previous();
+        Expr right = this.parsePrecedence(RULES[operator.type().ordinal()].precedence().next());
+        return new Expr.Binary(left, operator, right);
     }
 
     public Expr unary() {
-        if (this.match(TokenType.BANG, TokenType.MINUS)) {
-            Token operator = this.previous();
-            Expr right = this.unary();
-            return new Expr.Unary(operator, right);
-        }
-
-        return this.call();
+        Token operator = this.previous();
+        Expr right = this.parsePrecedence(Precedence.UNARY);
+        return new Expr.Unary(operator, right);
     }
 
-    public Expr finishCall(Expr callee) {
+    public Expr call(Expr callee) {
         List<Expr> arguments = new ArrayList<>();
         if (!this.check(TokenType.RIGHT_PAREN)) {
             do {
@@ -347,70 +372,45 @@ public class Parser {
         return new Expr.Call(callee, paren, arguments);
     }
 
-    public Expr call() {
-        Expr expr = this.primary();
-
-        while (true) {
-            if (this.match(TokenType.LEFT_PAREN)) {
-                expr = this.finishCall(expr);
-            } else if (this.match(TokenType.DOT)) {
-                Token name = this.consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
-                expr = new Expr.Get(expr, name);
-            } else {
-                break;
-            }
-        }
-
-        return expr;
+    public Expr dot(Expr object) {
+        Token name = this.consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
+        return new Expr.Get(object, name, new InlineCache());
     }
 
-    public Expr primary() {
-        if (this.match(TokenType.FALSE)) {
-            return new Expr.Literal(false);
-        }
-
-        if (this.match(TokenType.TRUE)) {
-            return new Expr.Literal(true);
-        }
-
-        if (this.match(TokenType.NIL)) {
-            return new Expr.Literal(null);
-        }
-
-        if (this.match(TokenType.NUMBER, TokenType.STRING)) {
-            return new Expr.Literal(this.previous().literal());
-        }
-
-        if (this.match(TokenType.SUPER)) {
-            Token keyword = this.previous();
-            this.consume(TokenType.DOT, "Expect '.' after 'super'.");
-            Token method = this.consume(TokenType.IDENTIFIER, "Expect superclass method name.");
-            return new Expr.Super(keyword, method);
-        }
+    public Expr literal() {
+        return switch (this.tokens.type(this.current - 1)) {
+            case FALSE -> new Expr.Literal(false);
+            case TRUE -> new Expr.Literal(true);
+            case NIL -> new Expr.Literal(null);
+            default -> new Expr.Literal(this.previous().literal());
+        };
+    }
 
-        if (this.match(TokenType.THIS)) {
-            return new Expr.This(this.previous());
-        }
+    public Expr superExpr() {
+        Token keyword = this.previous();
+        this.consume(TokenType.DOT, "Expect '.' after 'super'.");
+        Token method = this.consume(TokenType.IDENTIFIER, "Expect superclass method name.");
+        return new Expr.Super(keyword, method, new Binding(), new InlineCache());
+    }
 
-        if (this.match(TokenType.IDENTIFIER)) {
-            return new Expr.Variable(this.previous());
-        }
+    public Expr thisExpr() {
+        return new Expr.This(this.previous(), new Binding());
+    }
 
-        if (this.match(TokenType.LEFT_PAREN)) {
-            Expr expr = this.expression();
-            this.consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
-        }
+    public Expr variable() {
+        return new Expr.Variable(this.previous(), new Binding());
+    }
 
-        throw this.error(this.peek(), "Expect expression.");
+    public Expr grouping() {
+        Expr expr = this.expression();
+        this.consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+        return new Expr.Grouping(expr);
     }
 
-    public boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (this.check(type)) {
-                this.advance();
-                return true;
-            }
+    public boolean match(TokenType type) {
+        if (this.check(type)) {
+            ++this.current;
+            return true;
         }
         return false;
     }
@@ -427,7 +427,7 @@ public class Parser {
         if (this.isAtEnd()) {
             return false;
         }
-        return this.peek().type() == type;
+        return this.tokens.type(this.current) == type;
     }
 
     public Token advance() {
@@ -438,19 +438,19 @@ public class Parser {
     }
 
     public boolean isAtEnd() {
-        return this.peek().type() == TokenType.EOF;
+        return this.tokens.type(this.current) == TokenType.EOF;
     }
 
     public Token peek() {
-        return this.tokens.get(this.current);
+        return this.tokens.token(this.current);
     }
 
     public Token previous() {
-        return this.tokens.get(this.current - 1);
+        return this.tokens.token(this.current - 1);
     }
 
     public ParserError error(Token token, String message) {
-        Lox.error(token, message);
+        this.reporter.error(token, message);
         return new ParserError();
     }
 
@@ -458,11 +458,11 @@ public class Parser {
         this.advance();
 
         while (!this.isAtEnd()) {
-            if (this.previous().type() == TokenType.SEMICOLON) {
+            if (this.tokens.type(this.current - 1) == TokenType.SEMICOLON) {
                 return;
             }
 
-            switch (this.peek().type()) {
+            switch (this.tokens.type(this.current)) {
                 case CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN -> {
                     return;
                 }
@@ -0,0 +1,107 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.portfolio.ewhitaker.lox.vm.Obj;
+
+// A script compiled once and executed any number of times, from any number of threads at once. Each execution sees
+// only its own bindings and the natives, and hands back what the script printed and the globals it defined rather
+// than writing to the process's streams.
+//
+// Contexts are kept between executions and reset rather than made anew, which keeps a VM's stack, the JIT's compiled
+// functions and globals already grown to fit, so an execution costs little more than running the script.
+public class PreparedScript {
+    public final LoxEngine engine;
+    public final Program program;
+    // For the VM, the bytecode too, and every global it indexes, since a new VM's globals have to make room for them
+    // before it runs.
+    public final Obj.Function function;
+    public final Symbol[] globals;
+    // The names the script's top-level declarations define.
+    public final Symbol[] defines;
+    public final ConcurrentLinkedQueue<Runner> idle = new ConcurrentLinkedQueue<>();
+
+    public PreparedScript(LoxEngine engine, Program program, Obj.Function function, Symbol[] globals, Symbol[] defines) {
+        this.engine = engine;
+        this.program = program;
+        this.function = function;
+        this.globals = globals;
+        this.defines = defines;
+    }
+
+    public Result execute(Map<String, ?> bindings) {
+        Runner runner = this.idle.poll();
+        if (runner == null) {
+            runner = new Runner(this.engine);
+        }
+
+        List<Symbol> names = new ArrayList<>(this.defines.length + bindings.size());
+        Collections.addAll(names, this.defines);
+        try {
+            for (Map.Entry<String, ?> binding : bindings.entrySet()) {
+                names.add(this.engine.symbols.intern(binding.getKey()));
+                runner.context.bind(binding.getKey(), binding.getValue());
+            }
+            runner.context.run(this);
+            return runner.result(names);
+        } finally {
+            runner.reset(names);
+            this.idle.offer(runner);
+        }
+    }
+
+    public static final class Runner {
+        public final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        public final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        public final LoxContext context;
+
+        public Runner(LoxEngine engine) {
+            this.context = engine.createContext(
+                    new PrintStream(this.out, false, StandardCharsets.UTF_8),
+                    new PrintStream(this.err, false, StandardCharsets.UTF_8)
+            );
+        }
+
+        public Result result(List<Symbol> names) {
+            this.context.out.flush();
+            this.context.reporter.err.flush();
+
+            Globals globals = this.context.globals();
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Symbol name : names) {
+                Object value = globals.valueOf(name);
+                if (value != Globals.UNDEFINED) {
+                    values.put(name.name, value instanceof Rope ? value.toString() : value);
+                }
+            }
+            return new Result(
+                    this.context.reporter.hadRuntimeError,
+                    this.out.toString(StandardCharsets.UTF_8),
+                    this.err.toString(StandardCharsets.UTF_8),
+                    Collections.unmodifiableMap(values)
+            );
+        }
+
+        public void reset(List<Symbol> names) {
+            this.context.reset(names);
+            this.context.out.flush();
+            this.context.reporter.err.flush();
+            this.out.reset();
+            this.err.reset();
+        }
+    }
+
+    // The globals are the bindings and whatever the top-level declarations defined before the script finished or
+    // failed, by name. Nil is null, numbers are Doubles and strings are Strings; anything else is the backend's own
+    // object for it.
+    public record Result(boolean hadRuntimeError, String output, String errors, Map<String, Object> globals) {
+    }
+}
@@ -0,0 +1,13 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.List;
+
+// A compiled script: a resolved and, if the engine optimizes, optimized tree. Nothing in it depends on the context it
+// runs in, and nothing running it changes it except the inline caches, which are safe to share, so one program can
+// run in any number of contexts at once. Its globals are indexed by its engine's numbering, though, so it runs only
+// in that engine's contexts.
+public record Program(LoxEngine engine, List<Stmt> statements) {
+    public Program {
+        statements = List.copyOf(statements);
+    }
+}
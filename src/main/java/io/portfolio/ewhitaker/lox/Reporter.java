@@ -0,0 +1,40 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.PrintStream;
+
+// Where a context's errors are written, and whether there have been any.
+public class Reporter {
+    public final PrintStream err;
+    public boolean hadError = false;
+    public boolean hadRuntimeError = false;
+
+    public Reporter(PrintStream err) {
+        this.err = err;
+    }
+
+    public void error(int line, String message) {
+        this.report(line, "", message);
+    }
+
+    public void report(int line, String where, String message) {
+        this.err.println("[line " + line + "] Error" + where + ": " + message);
+        this.hadError = true;
+    }
+
+    public void error(Token token, String message) {
+        if (token.type() == TokenType.EOF) {
+            this.report(token.line(), " at end", message);
+        } else {
+            this.report(token.line(), " at '" + token.lexeme() + "'", message);
+        }
+    }
+
+    public void runtimeError(RuntimeError error) {
+        this.runtimeError(error.getMessage(), error.token.line());
+    }
+
+    public void runtimeError(String message, int line) {
+        this.err.println(message + "\n[line " + line + "]");
+        this.hadRuntimeError = true;
+    }
+}
@@ -19,13 +19,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         SUBCLASS
     }
 
-    public final Evaluator evaluator;
-    public final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    public record Slot(int index, boolean defined) {
+    }
+
+    public final SymbolTable symbols;
+    public final Reporter reporter;
+    public final Stack<Map<Symbol, Slot>> scopes = new Stack<>();
+    // Parallel to scopes. Functions and classes always get a frame of their own; blocks may share the one around them.
+    public final Stack<Scope> layouts = new Stack<>();
     public FunctionType currentFunction = FunctionType.NONE;
     public ClassType currentClass = ClassType.NONE;
 
-    public Resolver(Evaluator evaluator) {
-        this.evaluator = evaluator;
+    public Resolver(SymbolTable symbols, Reporter reporter) {
+        this.symbols = symbols;
+        this.reporter = reporter;
     }
 
     public void resolve(List<Stmt> statements) {
@@ -36,7 +43,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
-        this.beginScope();
+        stmt.scope().inline = this.canInline(stmt.statements());
+        this.beginScope(stmt.scope());
         this.resolve(stmt.statements());
         this.endScope();
         return null;
@@ -50,8 +58,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         this.declare(stmt.name());
         this.define(stmt.name());
 
-        if (stmt.superclass() != null && stmt.name().lexeme().equals(stmt.superclass().name().lexeme())) {
-            Lox.error(stmt.superclass().name(), "A class can't inherit from itself.");
+        if (stmt.superclass() != null && stmt.name().symbol() == stmt.superclass().name().symbol()) {
+            this.reporter.error(stmt.superclass().name(), "A class can't inherit from itself.");
         }
 
         if (stmt.superclass() != null) {
@@ -61,22 +69,17 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if (stmt.superclass() != null) {
             this.beginScope();
-            this.scopes.peek().put("super", true);
+            this.scopes.peek().put(Symbol.SUPER, new Slot(0, true));
         }
 
-        this.beginScope();
-        this.scopes.peek().put("this", true);
-
         for (Stmt.Function method : stmt.methods()) {
             FunctionType declaration = FunctionType.METHOD;
-            if (method.name().lexeme().equals("init")) {
+            if (method.name().symbol() == Symbol.INIT) {
                 declaration = FunctionType.INITIALIZER;
             }
             this.resolveFunction(method, declaration);
         }
 
-        this.endScope();
-
         if (stmt.superclass() != null) {
             this.endScope();
         }
@@ -119,12 +122,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (this.currentFunction == FunctionType.NONE) {
-            Lox.error(stmt.keyword(), "Can't return from top-level code.");
+            this.reporter.error(stmt.keyword(), "Can't return from top-level code.");
         }
 
         if (stmt.value() != null) {
             if (this.currentFunction == FunctionType.INITIALIZER) {
-                Lox.error(stmt.keyword(), "Can't return a value from an initializer.");
+                this.reporter.error(stmt.keyword(), "Can't return a value from an initializer.");
             }
             this.resolve(stmt.value());
         }
@@ -152,7 +155,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         this.resolve(expr.value());
-        this.resolveLocal(expr, expr.name());
+        this.resolveLocal(expr.binding(), expr.name());
         return null;
     }
 
@@ -208,23 +211,23 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSuperExpr(Expr.Super expr) {
         if (this.currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword(), "Can't use 'super' outside of  a class.");
+            this.reporter.error(expr.keyword(), "Can't use 'super' outside of  a class.");
         } else if (this.currentClass != ClassType.SUBCLASS) {
-            Lox.error(expr.keyword(), "Can't use 'super' in a class with no superclass.");
+            this.reporter.error(expr.keyword(), "Can't use 'super' in a class with no superclass.");
         }
 
-        this.resolveLocal(expr, expr.keyword());
+        this.resolveLocal(expr.binding(), expr.keyword());
         return null;
     }
 
     @Override
     public Void visitThisExpr(Expr.This expr) {
         if (this.currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword(), "Can't use 'this' outside of a class.");
+            this.reporter.error(expr.keyword(), "Can't use 'this' outside of a class.");
             return null;
         }
 
-        this.resolveLocal(expr, expr.keyword());
+        this.resolveLocal(expr.binding(), expr.keyword());
         return null;
     }
 
@@ -236,11 +239,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        if (!this.scopes.isEmpty() && this.scopes.peek().get(expr.name().lexeme()) == Boolean.FALSE) {
-            Lox.error(expr.name(), "Can't read local variable in its own initializer.");
+        if (!this.scopes.isEmpty()) {
+            Slot slot = this.scopes.peek().get(expr.name().symbol());
+            if (slot != null && !slot.defined()) {
+                this.reporter.error(expr.name(), "Can't read local variable in its own initializer.");
+            }
         }
 
-        this.resolveLocal(expr, expr.name());
+        this.resolveLocal(expr.binding(), expr.name());
         return null;
     }
 
@@ -257,8 +263,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         currentFunction = type;
 
         this.beginScope();
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            this.scopes.peek().put(Symbol.THIS, new Slot(0, true));
+        }
         for (Token param : function.params()) {
-            this.define(param);
+            this.declare(param);
             this.define(param);
         }
         this.resolve(function.body());
@@ -267,11 +276,71 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public void beginScope() {
+        this.beginScope(new Scope());
+    }
+
+    public void beginScope(Scope scope) {
+        if (scope.inline && !this.scopes.isEmpty()) {
+            scope.base = this.layouts.peek().base + this.scopes.peek().size();
+        }
         this.scopes.push(new HashMap<>());
+        this.layouts.push(scope);
     }
 
     public void endScope() {
         this.scopes.pop();
+        this.layouts.pop();
+    }
+
+    // A block can run in the frame around it when it declares nothing. So can one that does, as long as there is such
+    // a frame and no closure is created inside it, since then nothing can still see its slots once they are reused.
+    public boolean canInline(List<Stmt> statements) {
+        if (!declares(statements)) {
+            return true;
+        }
+        return this.frame() != null && !createsClosures(statements);
+    }
+
+    // The scope whose frame the innermost scope's variables live in.
+    public Scope frame() {
+        for (int i = this.layouts.size() - 1; i >= 0; --i) {
+            if (!this.layouts.get(i).inline) {
+                return this.layouts.get(i);
+            }
+        }
+        return null;
+    }
+
+    public static boolean declares(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean createsClosures(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (createsClosures(statement)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean createsClosures(Stmt statement) {
+        if (statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+            return true;
+        } else if (statement instanceof Stmt.Block block) {
+            return createsClosures(block.statements());
+        } else if (statement instanceof Stmt.If stmt) {
+            return createsClosures(stmt.thenBranch())
+                    || (stmt.elseBranch() != null && createsClosures(stmt.elseBranch()));
+        } else if (statement instanceof Stmt.While stmt) {
+            return createsClosures(stmt.body());
+        }
+        return false;
     }
 
     public void declare(Token name) {
@@ -279,26 +348,41 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             return;
         }
 
-        Map<String, Boolean> scope = this.scopes.peek();
-        if (scope.containsKey(name.lexeme())) {
-            Lox.error(name, "Already a variable with this name in this scope.");
+        Map<Symbol, Slot> scope = this.scopes.peek();
+        if (scope.containsKey(name.symbol())) {
+            this.reporter.error(name, "Already a variable with this name in this scope.");
+            return;
         }
-        scope.put(name.lexeme(), false);
+        int index = this.layouts.peek().base + scope.size();
+        scope.put(name.symbol(), new Slot(index, false));
+
+        Scope frame = this.frame();
+        frame.size = Math.max(frame.size, index + 1);
     }
 
     public void define(Token name) {
         if (this.scopes.isEmpty()) {
             return;
         }
-        this.scopes.peek().put(name.lexeme(), true);
+
+        Map<Symbol, Slot> scope = this.scopes.peek();
+        scope.put(name.symbol(), new Slot(scope.get(name.symbol()).index(), true));
     }
 
-    public void resolveLocal(Expr expr, Token name) {
+    public void resolveLocal(Binding binding, Token name) {
+        int depth = 0;
         for (int i = this.scopes.size() - 1; i >= 0; --i) {
-            if (this.scopes.get(i).containsKey(name.lexeme())) {
-                this.evaluator.resolve(expr, scopes.size() - 1 - i);
+            Slot slot = this.scopes.get(i).get(name.symbol());
+            if (slot != null) {
+                binding.resolve(depth, slot.index());
                 return;
             }
+
+            if (!this.layouts.get(i).inline) {
+                ++depth;
+            }
         }
+
+        binding.resolve(Binding.GLOBAL, this.symbols.global(name.symbol()));
     }
 }
@@ -0,0 +1,82 @@
+package io.portfolio.ewhitaker.lox;
+
+// A long Lox string built with +. It is a prefix of a builder that may be shared with other ropes, and appending to the
+// rope that ends where the builder does just extends the builder, so building a string up in a loop is linear rather
+// than quadratic. The String is only copied out when something needs one: printing, comparing or hashing.
+public final class Rope {
+    // Below this length a plain copy is cheaper than keeping a builder around.
+    public static final int THRESHOLD = 256;
+
+    public final StringBuilder builder;
+    public final int length;
+    public String flat = null;
+
+    public Rope(StringBuilder builder, int length) {
+        this.builder = builder;
+        this.length = length;
+    }
+
+    public static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    public static int length(Object value) {
+        return value instanceof Rope rope ? rope.length : ((String) value).length();
+    }
+
+    // Both operands must be strings or ropes.
+    public static Object concat(Object left, Object right) {
+        int length = length(left) + length(right);
+        if (length < THRESHOLD) {
+            return left.toString() + right.toString();
+        }
+
+        if (left instanceof Rope rope) {
+            // Ropes may be shared between threads, and only one of them gets to extend the builder.
+            synchronized (rope.builder) {
+                if (rope.builder.length() == rope.length) {
+                    append(rope.builder, right);
+                    return new Rope(rope.builder, length);
+                }
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(length * 2);
+        append(builder, left);
+        append(builder, right);
+        return new Rope(builder, length);
+    }
+
+    public static void append(StringBuilder builder, Object value) {
+        if (value instanceof Rope rope && rope.builder != builder) {
+            synchronized (rope.builder) {
+                builder.append(rope.builder, 0, rope.length);
+            }
+        } else {
+            builder.append(value.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (this.flat == null) {
+            synchronized (this.builder) {
+                this.flat = this.builder.substring(0, this.length);
+            }
+        }
+        return this.flat;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!isString(other) || length(other) != this.length) {
+            return false;
+        }
+        return this.toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.toString().hashCode();
+    }
+}
@@ -7,4 +7,9 @@ public class RuntimeError extends RuntimeException {
         super(message);
         this.token = token;
     }
+
+    // A native has no token of its own, so the call site fills in its own.
+    public RuntimeError at(Token token) {
+        return this.token == null ? new RuntimeError(token, this.getMessage()) : this;
+    }
 }
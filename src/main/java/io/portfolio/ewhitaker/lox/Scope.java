@@ -0,0 +1,9 @@
+package io.portfolio.ewhitaker.lox;
+
+// What the resolver decided about a block. An inline block runs in the frame around it: its variables take the slots
+// from base on and are given back when it exits. Otherwise the block gets a frame of its own with room for size slots.
+public class Scope {
+    public boolean inline = false;
+    public int base = 0;
+    public int size = 0;
+}
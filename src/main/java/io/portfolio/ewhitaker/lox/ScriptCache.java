@@ -0,0 +1,152 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Resolved programs saved between runs, so a script that has not changed skips lexing, parsing and resolving. An
+// entry is named by a hash of the interpreter version and the source, so changing either one simply misses. The tree
+// itself is stored with its length and a CRC-32, so an entry that was truncated or corrupted on disk is reparsed
+// rather than read. Anything else wrong with an entry counts as a miss too, and storing is best effort.
+public class ScriptCache {
+    public static final int MAGIC = 0x4c4f5843;
+    // Bump whenever AstWriter's output or the meaning of a resolved tree changes.
+    public static final int FORMAT = 2;
+
+    public final Path directory;
+    public final String version = version();
+
+    public ScriptCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // $XDG_CACHE_HOME/jlox, falling back to ~/.cache/jlox.
+    public static Path defaultDirectory() {
+        String cache = System.getenv("XDG_CACHE_HOME");
+        if (cache == null || cache.isEmpty()) {
+            return Path.of(System.getProperty("user.home"), ".cache", "jlox");
+        }
+        return Path.of(cache, "jlox");
+    }
+
+    // The format, the release, and when the jar or class directory the interpreter was loaded from last changed, so
+    // that a rebuild without a new version number still invalidates the cache.
+    public static String version() {
+        String version = FORMAT + "/" + Lox.class.getPackage().getImplementationVersion();
+        CodeSource code = Lox.class.getProtectionDomain().getCodeSource();
+        if (code == null) {
+            return version;
+        }
+
+        try {
+            Path location = Path.of(code.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                location = location.resolve(Lox.class.getName().replace('.', '/') + ".class");
+            }
+            return version + "/" + Files.getLastModifiedTime(location).toMillis();
+        } catch (IOException | URISyntaxException | RuntimeException error) {
+            return version;
+        }
+    }
+
+    public Path entry(Source source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+        digest.update(this.version.getBytes(StandardCharsets.UTF_8));
+        digest.update(source.bytes.duplicate().clear());
+        return this.directory.resolve(HexFormat.of().formatHex(digest.digest()) + ".loxc");
+    }
+
+    // Returns null on a miss.
+    public List<Stmt> load(Path entry, Source source, SymbolTable symbols) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] version = this.version.getBytes(StandardCharsets.UTF_8);
+            if (in.getInt() != MAGIC || in.getInt() != version.length) {
+                return null;
+            }
+
+            byte[] written = new byte[version.length];
+            in.get(written);
+            if (!Arrays.equals(written, version) || in.getInt() != source.length) {
+                return null;
+            }
+
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length != in.remaining() || checksum != checksum(in.duplicate())) {
+                return null;
+            }
+            return new AstReader(in, source, symbols).read();
+        } catch (IOException | RuntimeException error) {
+            return null;
+        }
+    }
+
+    public static int checksum(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    // Written to a temporary file first, so that a concurrent run never sees half an entry.
+    public void store(Path entry, Source source, List<Stmt> statements) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(this.directory);
+            temporary = Files.createTempFile(this.directory, "entry", ".tmp");
+            try (OutputStream file = Files.newOutputStream(temporary)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+                byte[] version = this.version.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeInt(version.length);
+                out.write(version);
+                out.writeInt(source.length);
+
+                ByteArrayOutputStream tree = new ByteArrayOutputStream();
+                DataOutputStream writer = new DataOutputStream(tree);
+                new AstWriter(writer).write(statements);
+                writer.flush();
+                byte[] bytes = tree.toByteArray();
+                out.writeInt(bytes.length);
+                out.writeInt(checksum(ByteBuffer.wrap(bytes)));
+                out.write(bytes);
+                out.flush();
+            }
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException error) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing more to do.
+                }
+            }
+        }
+    }
+}
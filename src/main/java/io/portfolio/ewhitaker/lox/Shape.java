@@ -0,0 +1,43 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The layout of an instance's fields. Instances of a class start out sharing the class's root shape and move along
+// transitions as fields are added, so instances that gain the same fields in the same order share one shape and
+// only carry an array of values.
+public class Shape {
+    public final Map<Symbol, Integer> indices;
+    public final Map<Symbol, Shape> transitions = new HashMap<>();
+
+    public Shape() {
+        this(Map.of());
+    }
+
+    public Shape(Map<Symbol, Integer> indices) {
+        this.indices = indices;
+    }
+
+    public int indexOf(Symbol name) {
+        Integer index = this.indices.get(name);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    public int size() {
+        return this.indices.size();
+    }
+
+    public synchronized Shape with(Symbol name) {
+        Shape shape = this.transitions.get(name);
+        if (shape == null) {
+            Map<Symbol, Integer> indices = new HashMap<>(this.indices);
+            indices.put(name, indices.size());
+            shape = new Shape(indices);
+            this.transitions.put(name, shape);
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,59 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// The UTF-8 bytes of a script. Everything outside string literals is ASCII, so the lexer scans bytes without decoding
+// them, and only the text a token is asked for gets turned into a String. A regular file is mapped rather than read,
+// which keeps even a very large script off the heap. Pipes and devices have no size to map, so they are read.
+public final class Source {
+    public final ByteBuffer bytes;
+    public final int length;
+
+    public Source(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.length = bytes.limit();
+    }
+
+    public Source(String text) {
+        this(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static Source map(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return new Source(ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int at(int index) {
+        return this.bytes.get(index) & 0xff;
+    }
+
+    public boolean startsWith(String prefix, int offset) {
+        if (offset + prefix.length() > this.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); ++i) {
+            if (this.at(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String text(int start, int end) {
+        byte[] text = new byte[end - start];
+        this.bytes.get(start, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
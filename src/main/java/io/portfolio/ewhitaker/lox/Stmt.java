@@ -23,7 +23,7 @@ public interface Stmt {
         R visitWhileStmt(While stmt);
     }
 
-    public record Block(List<Stmt> statements) implements Stmt {
+    public record Block(List<Stmt> statements, Scope scope) implements Stmt {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitBlockStmt(this);
@@ -0,0 +1,30 @@
+package io.portfolio.ewhitaker.lox;
+
+// An interned identifier. The lexer looks every name up in its engine's SymbolTable straight from the source, so each
+// distinct name is copied out once, and from then on names are keyed and compared by identity: a symbol hashes to its
+// id and is only ever equal to itself.
+public final class Symbol {
+    // The names the interpreter itself looks for. Every table starts with these, so they are the same symbols in
+    // every engine.
+    public static final Symbol INIT = new Symbol("init", 0);
+    public static final Symbol THIS = new Symbol("this", 1);
+    public static final Symbol SUPER = new Symbol("super", 2);
+
+    public final String name;
+    public final int id;
+
+    public Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
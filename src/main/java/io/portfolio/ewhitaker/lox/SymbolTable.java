@@ -0,0 +1,109 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.Arrays;
+
+// An engine's symbols, and the numbering of its global variables. Both belong to the engine rather than the process,
+// so they grow only with the names its own scripts use and go away with it.
+//
+// Globals are numbered densely in the order the engine first resolves them, apart from symbols, so that a context's
+// globals hold one slot for each global name and not one for every field, method and local besides. A tree resolved
+// once indexes the globals of every context of its engine.
+public class SymbolTable {
+    public Symbol[] table = new Symbol[256];
+    public int count = 0;
+    // Each symbol's global index plus one, by symbol id, or 0 if it names no global.
+    public int[] globals = new int[256];
+    public int globalCount = 0;
+
+    public SymbolTable() {
+        this.add(Symbol.INIT);
+        this.add(Symbol.THIS);
+        this.add(Symbol.SUPER);
+        // Names interned from here on are numbered after the built-ins, so no two symbols share an id or a global.
+        this.count = Symbol.SUPER.id + 1;
+    }
+
+    public void add(Symbol symbol) {
+        int mask = this.table.length - 1;
+        int index = symbol.name.hashCode() & mask;
+        while (this.table[index] != null) {
+            index = (index + 1) & mask;
+        }
+        this.table[index] = symbol;
+    }
+
+    public Symbol intern(String name) {
+        return this.intern(name, 0, name.length());
+    }
+
+    // Open addressing with linear probing, keyed on the characters themselves so that a name already seen costs no
+    // allocation.
+    public synchronized Symbol intern(String source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = this.table.length - 1;
+        int index = hash & mask;
+        for (Symbol symbol = this.table[index]; symbol != null; symbol = this.table[index]) {
+            if (symbol.name.length() == end - start && symbol.name.regionMatches(0, source, start, end - start)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+
+        return this.create(index, source.substring(start, end));
+    }
+
+    // Names are ASCII, so their bytes hash and compare the same as their characters.
+    public synchronized Symbol intern(Source source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + source.at(i);
+        }
+
+        int mask = this.table.length - 1;
+        int index = hash & mask;
+        for (Symbol symbol = this.table[index]; symbol != null; symbol = this.table[index]) {
+            if (symbol.name.length() == end - start && source.startsWith(symbol.name, start)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+
+        return this.create(index, source.text(start, end));
+    }
+
+    public Symbol create(int index, String name) {
+        Symbol symbol = new Symbol(name, this.count++);
+        this.table[index] = symbol;
+        if (this.count * 2 > this.table.length) {
+            Symbol[] old = this.table;
+            this.table = new Symbol[old.length * 2];
+            for (Symbol existing : old) {
+                if (existing != null) {
+                    this.add(existing);
+                }
+            }
+        }
+        return symbol;
+    }
+
+    // The global index of a name, numbering it if it is new.
+    public synchronized int global(Symbol name) {
+        if (name.id >= this.globals.length) {
+            this.globals = Arrays.copyOf(this.globals, Math.max(this.globals.length * 2, name.id + 1));
+        }
+
+        if (this.globals[name.id] == 0) {
+            this.globals[name.id] = ++this.globalCount;
+        }
+        return this.globals[name.id] - 1;
+    }
+
+    // The global index of a name, or -1 if it has none.
+    public synchronized int find(Symbol name) {
+        return name.id < this.globals.length ? this.globals[name.id] - 1 : -1;
+    }
+}
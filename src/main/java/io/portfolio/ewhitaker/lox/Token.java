@@ -1,7 +1,24 @@
 package io.portfolio.ewhitaker.lox;
 
-public record Token(TokenType type, String lexeme, Object literal, int line) {
+// A token is a range of the source, so its lexeme is only copied out when something asks for it. Identifiers and
+// keywords carry their interned symbol, and their lexeme is the symbol's name.
+public record Token(TokenType type, Source source, int start, int length, Object literal, int line, Symbol symbol) {
+    public Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, new Source(lexeme), literal, line);
+    }
+
+    public Token(TokenType type, Source source, Object literal, int line) {
+        this(type, source, 0, source.length, literal, line, null);
+    }
+
+    public String lexeme() {
+        if (this.symbol != null) {
+            return this.symbol.name;
+        }
+        return this.source.text(this.start, this.start + this.length);
+    }
+
     public String toString() {
-        return this.type + " " + this.lexeme + " " + this.literal;
+        return this.type + " " + this.lexeme() + " " + this.literal;
     }
 }
@@ -0,0 +1,72 @@
+package io.portfolio.ewhitaker.lox;
+
+import java.util.Arrays;
+
+// What the lexer produces: parallel arrays of token type, source offset, length and line. The parser turns a token
+// into a Token only when it keeps it in the tree or reports an error at it.
+public class Tokens {
+    public static final TokenType[] TYPES = TokenType.values();
+
+    public final Source source;
+    public final SymbolTable symbols;
+    public byte[] types;
+    public int[] starts;
+    public int[] lengths;
+    public int[] lines;
+    public int count = 0;
+
+    public Tokens(Source source, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+
+        // About one token per four bytes, but a large script may be mostly comments and string literals, so past a point
+        // let the arrays grow instead.
+        int capacity = Math.max(16, Math.min(source.length / 4, 1 << 16));
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+    }
+
+    public void add(TokenType type, int start, int length, int line) {
+        if (this.count == this.types.length) {
+            int capacity = this.count * 2;
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+            this.lines = Arrays.copyOf(this.lines, capacity);
+        }
+
+        this.types[this.count] = (byte) type.ordinal();
+        this.starts[this.count] = start;
+        this.lengths[this.count] = length;
+        this.lines[this.count] = line;
+        ++this.count;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[this.types[index]];
+    }
+
+    public Token token(int index) {
+        return token(
+                this.source, this.symbols, this.type(index), this.starts[index], this.lengths[index], this.lines[index]
+        );
+    }
+
+    public static Token token(Source source, SymbolTable symbols, TokenType type, int start, int length, int line) {
+        return switch (type) {
+            case IDENTIFIER, THIS, SUPER -> new Token(
+                    type, source, start, length, null, line, symbols.intern(source, start, start + length)
+            );
+            // Trim the surrounding quotes.
+            case STRING -> new Token(
+                    type, source, start, length, source.text(start + 1, start + length - 1), line, null
+            );
+            case NUMBER -> new Token(
+                    type, source, start, length, Lexer.number(source, start, start + length), line, null
+            );
+            default -> new Token(type, source, start, length, null, line, null);
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough of the class file format (JVMS chapter 4) to emit one class with a few methods.
+public class ClassFile {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    public static final int CONSTANT_UTF8 = 1;
+    public static final int CONSTANT_INTEGER = 3;
+    public static final int CONSTANT_CLASS = 7;
+    public static final int CONSTANT_FIELDREF = 9;
+    public static final int CONSTANT_METHODREF = 10;
+    public static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    public final String name;
+    public final String superName;
+
+    public final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    public final DataOutputStream pool = new DataOutputStream(this.poolBytes);
+    public final Map<String, Integer> entries = new HashMap<>();
+    public int poolCount = 1;
+
+    public final List<byte[]> methods = new ArrayList<>();
+
+    public ClassFile(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    public int utf8(String value) {
+        Integer index = this.entries.get("utf8:" + value);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            this.pool.writeByte(CONSTANT_UTF8);
+            this.pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this.add("utf8:" + value);
+    }
+
+    public int integer(int value) {
+        return this.entry("int:" + value, CONSTANT_INTEGER, value >>> 16, value & 0xffff);
+    }
+
+    public int classRef(String name) {
+        return this.entry("class:" + name, CONSTANT_CLASS, this.utf8(name));
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        return this.entry(
+                "nat:" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE, this.utf8(name), this.utf8(descriptor)
+        );
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return this.entry(
+                "field:" + owner + "." + name + ":" + descriptor, CONSTANT_FIELDREF,
+                this.classRef(owner), this.nameAndType(name, descriptor)
+        );
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return this.entry(
+                "method:" + owner + "." + name + ":" + descriptor, CONSTANT_METHODREF,
+                this.classRef(owner), this.nameAndType(name, descriptor)
+        );
+    }
+
+    // Every constant besides UTF8 is a tag followed by two u2 operands, which covers integers as two halves too.
+    public int entry(String key, int tag, int first, int... rest) {
+        Integer index = this.entries.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            this.pool.writeByte(tag);
+            this.pool.writeShort(first);
+            for (int operand : rest) {
+                this.pool.writeShort(operand);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this.add(key);
+    }
+
+    public int add(String key) {
+        int index = this.poolCount++;
+        this.entries.put(key, index);
+        return index;
+    }
+
+    public void method(int access, String name, String descriptor, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(this.utf8(name));
+            out.writeShort(this.utf8(descriptor));
+            out.writeShort(1);
+
+            byte[] frames = code.stackMapTable();
+            out.writeShort(this.utf8("Code"));
+            out.writeInt(12 + code.length + (frames == null ? 0 : 6 + frames.length));
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(code.length);
+            out.write(code.bytes, 0, code.length);
+            out.writeShort(0);
+            if (frames == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(this.utf8("StackMapTable"));
+                out.writeInt(frames.length);
+                out.write(frames);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.methods.add(bytes.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        int thisClass = this.classRef(this.name);
+        int superClass = this.classRef(this.superName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(52);
+            out.writeShort(this.poolCount);
+            this.poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(this.methods.size());
+            for (byte[] method : this.methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
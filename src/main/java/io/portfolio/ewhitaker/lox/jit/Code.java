@@ -0,0 +1,316 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A method body. The operand stack is tracked as verification types (an internal class name, an array descriptor,
+// or "I") so that every branch target can be given a full stack map frame. Locals past the fixed parameters are all
+// java/lang/Object and must be initialized before the first branch target.
+public class Code {
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC_W = 0x13;
+    public static final int ALOAD = 0x19;
+    public static final int AALOAD = 0x32;
+    public static final int ASTORE = 0x3a;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int GOTO = 0xa7;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int GETFIELD = 0xb4;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int CHECKCAST = 0xc0;
+    public static final int WIDE = 0xc4;
+
+    public static final String OBJECT = "java/lang/Object";
+
+    public static class Label {
+        public int position = -1;
+        public List<String> stack = null;
+        public final List<Integer> jumps = new ArrayList<>();
+    }
+
+    public record StackMapFrame(int position, List<String> stack) {
+    }
+
+    public final ClassFile file;
+    // The verification types of the locals every method starts with, before the Object-typed ones.
+    public final List<String> parameters;
+
+    public byte[] bytes = new byte[64];
+    public int length = 0;
+    public int maxStack = 0;
+    public int maxLocals;
+
+    public List<String> stack = new ArrayList<>();
+    public boolean reachable = true;
+    public final List<StackMapFrame> frames = new ArrayList<>();
+
+    public Code(ClassFile file, List<String> parameters) {
+        this.file = file;
+        this.parameters = parameters;
+        this.maxLocals = parameters.size();
+    }
+
+    public int newLocal() {
+        return this.maxLocals++;
+    }
+
+    public void write(int b) {
+        if (this.length == this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+        }
+        this.bytes[this.length++] = (byte) b;
+    }
+
+    public void writeShort(int value) {
+        this.write(value >> 8);
+        this.write(value);
+    }
+
+    public void push(String type) {
+        this.stack.add(type);
+        this.maxStack = Math.max(this.maxStack, this.stack.size());
+    }
+
+    public void pop(int count) {
+        for (int i = 0; i < count; ++i) {
+            this.stack.remove(this.stack.size() - 1);
+        }
+    }
+
+    public void op(int opcode, int popped, String pushed) {
+        this.write(opcode);
+        this.pop(popped);
+        if (pushed != null) {
+            this.push(pushed);
+        }
+    }
+
+    public void dup() {
+        this.op(DUP, 0, this.stack.get(this.stack.size() - 1));
+    }
+
+    public void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            this.write(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            this.write(BIPUSH);
+            this.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            this.write(SIPUSH);
+            this.writeShort(value);
+        } else {
+            this.write(LDC_W);
+            this.writeShort(this.file.integer(value));
+        }
+        this.push("I");
+    }
+
+    public void load(int local, String type) {
+        this.localInstruction(ALOAD, local);
+        this.push(type);
+    }
+
+    public void store(int local) {
+        this.localInstruction(ASTORE, local);
+        this.pop(1);
+    }
+
+    public void localInstruction(int opcode, int local) {
+        if (local <= 3) {
+            // aload_<n> and astore_<n> follow their general form at a fixed distance.
+            this.write((opcode == ALOAD ? 0x2a : 0x4b) + local);
+        } else if (local <= 0xff) {
+            this.write(opcode);
+            this.write(local);
+        } else {
+            this.write(WIDE);
+            this.write(opcode);
+            this.writeShort(local);
+        }
+    }
+
+    public void typeInstruction(int opcode, String type, int popped, String pushed) {
+        this.write(opcode);
+        this.writeShort(this.file.classRef(type));
+        this.pop(popped);
+        this.push(pushed);
+    }
+
+    public void field(int opcode, String owner, String name, String descriptor) {
+        this.write(opcode);
+        this.writeShort(this.file.fieldRef(owner, name, descriptor));
+        this.pop(opcode == GETFIELD ? 1 : 0);
+        this.push(verificationType(descriptor));
+    }
+
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        this.write(opcode);
+        this.writeShort(this.file.methodRef(owner, name, descriptor));
+
+        int close = descriptor.indexOf(')');
+        this.pop(parameterTypes(descriptor.substring(1, close)).size() + (opcode == INVOKESTATIC ? 0 : 1));
+        String returnType = descriptor.substring(close + 1);
+        if (!returnType.equals("V")) {
+            this.push(verificationType(returnType));
+        }
+    }
+
+    public void jump(int opcode, Label label) {
+        int position = this.length;
+        this.write(opcode);
+        this.writeShort(0);
+        if (opcode != GOTO) {
+            this.pop(1);
+        }
+
+        if (label.stack == null) {
+            label.stack = new ArrayList<>(this.stack);
+        }
+
+        if (label.position >= 0) {
+            this.patch(position, label.position);
+        } else {
+            label.jumps.add(position);
+        }
+
+        if (opcode == GOTO) {
+            this.reachable = false;
+        }
+    }
+
+    public void bind(Label label) {
+        label.position = this.length;
+        for (int jump : label.jumps) {
+            this.patch(jump, label.position);
+        }
+
+        if (this.reachable) {
+            label.stack = new ArrayList<>(this.stack);
+        } else if (label.stack != null) {
+            this.stack = new ArrayList<>(label.stack);
+            this.reachable = true;
+        } else {
+            return;
+        }
+
+        // Loop heads are bound before anything jumps to them, so every bound label gets a frame.
+        if (!this.frames.isEmpty() && this.frames.get(this.frames.size() - 1).position() == label.position) {
+            return;
+        }
+        this.frames.add(new StackMapFrame(label.position, label.stack));
+    }
+
+    public void patch(int jump, int target) {
+        int offset = target - jump;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new JitCompiler.Unsupported("Jump too large.");
+        }
+        this.bytes[jump + 1] = (byte) (offset >> 8);
+        this.bytes[jump + 2] = (byte) offset;
+    }
+
+    public void terminate(int opcode) {
+        this.op(opcode, opcode == RETURN ? 0 : 1, null);
+        this.reachable = false;
+    }
+
+    // Moves everything emitted so far after the given prologue, which must leave the stack empty and not branch.
+    public void prepend(Code prologue) {
+        byte[] combined = new byte[prologue.length + this.length];
+        System.arraycopy(prologue.bytes, 0, combined, 0, prologue.length);
+        System.arraycopy(this.bytes, 0, combined, prologue.length, this.length);
+        this.bytes = combined;
+        this.length = combined.length;
+        this.maxStack = Math.max(this.maxStack, prologue.maxStack);
+
+        for (int i = 0; i < this.frames.size(); ++i) {
+            StackMapFrame frame = this.frames.get(i);
+            this.frames.set(i, new StackMapFrame(frame.position() + prologue.length, frame.stack()));
+        }
+    }
+
+    public byte[] stackMapTable() {
+        if (this.frames.isEmpty()) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(this.frames.size());
+            int previous = -1;
+            for (StackMapFrame frame : this.frames) {
+                out.writeByte(255);
+                out.writeShort(frame.position() - previous - 1);
+                previous = frame.position();
+
+                out.writeShort(this.maxLocals);
+                for (String type : this.parameters) {
+                    this.writeVerificationType(out, type);
+                }
+                for (int i = this.parameters.size(); i < this.maxLocals; ++i) {
+                    this.writeVerificationType(out, OBJECT);
+                }
+
+                out.writeShort(frame.stack().size());
+                for (String type : frame.stack()) {
+                    this.writeVerificationType(out, type);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public void writeVerificationType(DataOutputStream out, String type) throws IOException {
+        if (type.equals("I")) {
+            out.writeByte(1);
+        } else {
+            out.writeByte(7);
+            out.writeShort(this.file.classRef(type));
+        }
+    }
+
+    public static List<String> parameterTypes(String descriptors) {
+        List<String> types = new ArrayList<>();
+        int i = 0;
+        while (i < descriptors.length()) {
+            int start = i;
+            while (descriptors.charAt(i) == '[') {
+                ++i;
+            }
+            if (descriptors.charAt(i) == 'L') {
+                i = descriptors.indexOf(';', i);
+            }
+            ++i;
+            types.add(verificationType(descriptors.substring(start, i)));
+        }
+        return types;
+    }
+
+    public static String verificationType(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'L' -> descriptor.substring(1, descriptor.length() - 1);
+            case '[' -> descriptor;
+            default -> "I";
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+
+// The superclass of every generated class. Constants that have no class file representation, like tokens for error
+// reporting, are handed to the generated constructor and loaded from here by index.
+public abstract class CompiledCode {
+    public final Object[] constants;
+
+    public CompiledCode(Object[] constants) {
+        this.constants = constants;
+    }
+
+    public abstract Object invoke(Evaluator evaluator, Frame closure, Object receiver, Object[] arguments);
+}
@@ -0,0 +1,32 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+import io.portfolio.ewhitaker.lox.LoxFunction;
+import io.portfolio.ewhitaker.lox.LoxInstance;
+import io.portfolio.ewhitaker.lox.Stmt;
+
+public class CompiledFunction extends LoxFunction {
+    public final CompiledCode code;
+
+    public CompiledFunction(
+            Stmt.Function declaration, Frame closure, boolean isInitializer, CompiledCode code, LoxInstance receiver
+    ) {
+        super(declaration, closure, isInitializer, receiver);
+        this.code = code;
+    }
+
+    @Override
+    public LoxFunction bind(LoxInstance instance) {
+        return new CompiledFunction(this.declaration, this.closure, this.isInitializer, this.code, instance);
+    }
+
+    @Override
+    public Object invoke(Evaluator evaluator, LoxInstance receiver, Object[] arguments) {
+        Object value = this.code.invoke(evaluator, this.closure, receiver, arguments);
+        if (this.isInitializer) {
+            return receiver;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,87 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import java.lang.invoke.MethodHandles;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.LoxFunction;
+import io.portfolio.ewhitaker.lox.RuntimeError;
+import io.portfolio.ewhitaker.lox.Stmt;
+
+// Compiles functions and scripts to hidden classes, falling back to the evaluator for whatever JitCompiler rejects.
+public class Jit {
+    public final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    // A declaration maps to null once it has been rejected so it is not compiled again for every closure.
+    public final Map<Stmt.Function, CompiledCode> functions = new IdentityHashMap<>();
+    // The last script compiled, which a context that runs the same program again can use again. Only the last, since
+    // the prompt compiles a new one for every line.
+    public List<Stmt> script = null;
+    public CompiledCode scriptCode = null;
+
+    // Synchronized, since tasks spawned by the script share their context's compiled code.
+    public synchronized LoxFunction function(
+            Evaluator evaluator, Stmt.Function declaration, Frame closure, boolean isMethod, boolean isInitializer
+    ) {
+        CompiledCode code;
+        if (this.functions.containsKey(declaration)) {
+            code = this.functions.get(declaration);
+        } else {
+            code = this.compile(evaluator.globals, declaration, isMethod);
+            this.functions.put(declaration, code);
+        }
+
+        if (code == null) {
+            return new LoxFunction(declaration, closure, isInitializer);
+        }
+        return new CompiledFunction(declaration, closure, isInitializer, code, null);
+    }
+
+    public CompiledCode compile(Globals globals, Stmt.Function declaration, boolean isMethod) {
+        try {
+            JitCompiler compiler = new JitCompiler(globals);
+            return this.define(compiler.function(declaration, isMethod), compiler.constants.toArray());
+        } catch (JitCompiler.Unsupported unsupported) {
+            return null;
+        }
+    }
+
+    public void execute(Evaluator evaluator, List<Stmt> statements) {
+        CompiledCode code;
+        if (statements == this.script) {
+            code = this.scriptCode;
+        } else {
+            try {
+                JitCompiler compiler = new JitCompiler(evaluator.globals);
+                code = this.define(compiler.script(statements), compiler.constants.toArray());
+            } catch (JitCompiler.Unsupported unsupported) {
+                code = null;
+            }
+            this.script = statements;
+            this.scriptCode = code;
+        }
+
+        if (code == null) {
+            evaluator.evaluate(statements);
+            return;
+        }
+
+        try {
+            code.invoke(evaluator, null, null, new Object[0]);
+        } catch (RuntimeError error) {
+            evaluator.context.reporter.runtimeError(error);
+        }
+    }
+
+    public CompiledCode define(byte[] bytes, Object[] constants) {
+        try {
+            Class<?> klass = this.lookup.defineHiddenClass(bytes, true).lookupClass();
+            return (CompiledCode) klass.getConstructor(Object[].class).newInstance((Object) constants);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.portfolio.ewhitaker.lox.Binding;
+import io.portfolio.ewhitaker.lox.Expr;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.Stmt;
+import io.portfolio.ewhitaker.lox.Token;
+import io.portfolio.ewhitaker.lox.TokenType;
+
+// Compiles one function body, or one top-level script, into the invoke method of a CompiledCode subclass.
+//
+// Every local declared inside the unit lives in a JVM local, so the unit must not contain function or class
+// declarations that could capture them. Variables of enclosing functions are read through the closure frame exactly
+// as the tree walker does. At the top level of a script, function and class declarations are handed back to the
+// evaluator instead since they only touch globals.
+public class JitCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    public static class Unsupported extends RuntimeException {
+        public Unsupported(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    public static final String NAME = "io/portfolio/ewhitaker/lox/jit/LoxCode";
+    public static final String BASE = "io/portfolio/ewhitaker/lox/jit/CompiledCode";
+    public static final String RUNTIME = "io/portfolio/ewhitaker/lox/jit/JitRuntime";
+    public static final String EVALUATOR = "io/portfolio/ewhitaker/lox/Evaluator";
+    public static final String FRAME = "io/portfolio/ewhitaker/lox/Frame";
+    public static final String GLOBALS = "io/portfolio/ewhitaker/lox/Globals";
+    public static final String TOKEN = "io/portfolio/ewhitaker/lox/Token";
+    public static final String INSTANCE = "io/portfolio/ewhitaker/lox/LoxInstance";
+    public static final String STMT = "io/portfolio/ewhitaker/lox/Stmt";
+    public static final String CACHE = "io/portfolio/ewhitaker/lox/InlineCache";
+    public static final String TASK = "io/portfolio/ewhitaker/lox/LoxTask";
+    public static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+
+    public static final String INVOKE_DESCRIPTOR =
+            "(L" + EVALUATOR + ";L" + FRAME + ";Ljava/lang/Object;" + OBJECT_ARRAY + ")Ljava/lang/Object;";
+    public static final String BINARY_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;L" + TOKEN + ";)Ljava/lang/Object;";
+
+    public static final int EVALUATOR_LOCAL = 1;
+    public static final int CLOSURE_LOCAL = 2;
+    public static final int RECEIVER_LOCAL = 3;
+    public static final int ARGUMENTS_LOCAL = 4;
+
+    public final Globals globals;
+    public final ClassFile file = new ClassFile(NAME, BASE);
+    public final Code code = new Code(this.file, List.of(NAME, EVALUATOR, FRAME, Code.OBJECT, OBJECT_ARRAY));
+    public final List<Object> constants = new ArrayList<>();
+    public final Map<Object, Integer> constantIndices = new IdentityHashMap<>();
+    public final List<List<Integer>> scopes = new ArrayList<>();
+    public int parameters = 0;
+
+    public JitCompiler(Globals globals) {
+        this.globals = globals;
+    }
+
+    public byte[] function(Stmt.Function function, boolean isMethod) {
+        List<Integer> scope = new ArrayList<>();
+        if (isMethod) {
+            scope.add(RECEIVER_LOCAL);
+        }
+        for (int i = 0; i < function.params().size(); ++i) {
+            scope.add(this.code.newLocal());
+        }
+        this.scopes.add(scope);
+        this.parameters = function.params().size();
+
+        this.statements(function.body());
+        return this.finish();
+    }
+
+    public byte[] script(List<Stmt> statements) {
+        this.statements(statements);
+        return this.finish();
+    }
+
+    public byte[] finish() {
+        if (this.code.reachable) {
+            this.code.op(Code.ACONST_NULL, 0, Code.OBJECT);
+            this.code.terminate(Code.ARETURN);
+        }
+
+        // Arguments move into their locals and every other local starts out nil, so all of them are initialized
+        // Objects at each branch target.
+        Code prologue = new Code(this.file, this.code.parameters);
+        for (int i = 0; i < this.parameters; ++i) {
+            prologue.load(ARGUMENTS_LOCAL, OBJECT_ARRAY);
+            prologue.pushInt(i);
+            prologue.op(Code.AALOAD, 2, Code.OBJECT);
+            prologue.store(this.code.parameters.size() + i);
+        }
+        for (int i = this.code.parameters.size() + this.parameters; i < this.code.maxLocals; ++i) {
+            prologue.op(Code.ACONST_NULL, 0, Code.OBJECT);
+            prologue.store(i);
+        }
+        this.code.prepend(prologue);
+        if (this.code.length > Short.MAX_VALUE) {
+            throw new Unsupported("Method too large.");
+        }
+
+        Code constructor = new Code(this.file, List.of(NAME, OBJECT_ARRAY));
+        constructor.load(0, NAME);
+        constructor.load(1, OBJECT_ARRAY);
+        constructor.invoke(Code.INVOKESPECIAL, BASE, "<init>", "(" + OBJECT_ARRAY + ")V");
+        constructor.terminate(Code.RETURN);
+
+        this.file.method(ClassFile.ACC_PUBLIC, "<init>", "(" + OBJECT_ARRAY + ")V", constructor);
+        this.file.method(ClassFile.ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, this.code);
+        return this.file.toByteArray();
+    }
+
+    public void statements(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            // Anything after a return is dead, and the verifier rejects dead code without a frame.
+            if (!this.code.reachable) {
+                return;
+            }
+            statement.accept(this);
+        }
+    }
+
+    public void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    public void condition(Expr expr) {
+        this.compile(expr);
+        this.code.invoke(Code.INVOKESTATIC, EVALUATOR, "isTruthy", "(Ljava/lang/Object;)Z");
+    }
+
+    public void constant(Object value, String type) {
+        Integer index = this.constantIndices.get(value);
+        if (index == null) {
+            index = this.constants.size();
+            this.constants.add(value);
+            this.constantIndices.put(value, index);
+        }
+
+        this.code.load(0, NAME);
+        this.code.field(Code.GETFIELD, BASE, "constants", OBJECT_ARRAY);
+        this.code.pushInt(index);
+        this.code.op(Code.AALOAD, 2, Code.OBJECT);
+        if (!type.equals(Code.OBJECT)) {
+            this.code.typeInstruction(Code.CHECKCAST, type, 1, type);
+        }
+    }
+
+    public void loadGlobals() {
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+        this.code.field(Code.GETFIELD, EVALUATOR, "globals", "L" + GLOBALS + ";");
+    }
+
+    // Frames the tree walker would create inside this unit are JVM locals; anything further out is in the closure.
+    public int closureDistance(int depth) {
+        return depth - this.scopes.size();
+    }
+
+    public void read(Token name, Binding binding) {
+        if (binding.isGlobal()) {
+            this.loadGlobals();
+            this.constant(name, TOKEN);
+            this.code.pushInt(binding.slot);
+            this.code.invoke(Code.INVOKEVIRTUAL, GLOBALS, "get", "(L" + TOKEN + ";I)Ljava/lang/Object;");
+        } else {
+            this.read(binding.depth, binding.slot);
+        }
+    }
+
+    public void read(int depth, int slot) {
+        if (depth < this.scopes.size()) {
+            this.code.load(this.local(depth, slot), Code.OBJECT);
+        } else {
+            this.code.load(CLOSURE_LOCAL, FRAME);
+            this.code.pushInt(this.closureDistance(depth));
+            this.code.pushInt(slot);
+            this.code.invoke(Code.INVOKEVIRTUAL, FRAME, "getAt", "(II)Ljava/lang/Object;");
+        }
+    }
+
+    public int local(int depth, int slot) {
+        return this.scopes.get(this.scopes.size() - 1 - depth).get(slot);
+    }
+
+    public void delegate(Stmt stmt) {
+        if (!this.scopes.isEmpty()) {
+            throw new Unsupported("Nested declarations may capture locals.");
+        }
+
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+        this.constant(stmt, STMT);
+        this.code.invoke(Code.INVOKESTATIC, RUNTIME, "evaluate", "(L" + EVALUATOR + ";L" + STMT + ";)V");
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.scope().inline) {
+            // The block's variables are appended to the enclosing scope's locals and dropped again after it.
+            List<Integer> scope = this.scopes.isEmpty() ? new ArrayList<>() : this.scopes.get(this.scopes.size() - 1);
+            int size = scope.size();
+            this.statements(stmt.statements());
+            scope.subList(size, scope.size()).clear();
+            return null;
+        }
+
+        this.scopes.add(new ArrayList<>());
+        this.statements(stmt.statements());
+        this.scopes.remove(this.scopes.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        this.delegate(stmt);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        this.compile(stmt.expression());
+        this.code.op(Code.POP, 1, null);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        this.delegate(stmt);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        Code.Label elseBranch = new Code.Label();
+        Code.Label end = new Code.Label();
+
+        this.condition(stmt.condition());
+        this.code.jump(Code.IFEQ, elseBranch);
+        stmt.thenBranch().accept(this);
+        if (stmt.elseBranch() != null) {
+            if (this.code.reachable) {
+                this.code.jump(Code.GOTO, end);
+            }
+            this.code.bind(elseBranch);
+            stmt.elseBranch().accept(this);
+            this.code.bind(end);
+        } else {
+            this.code.bind(elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+        this.compile(stmt.expression());
+        this.code.invoke(Code.INVOKESTATIC, RUNTIME, "print", "(L" + EVALUATOR + ";Ljava/lang/Object;)V");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value() != null) {
+            this.compile(stmt.value());
+        } else {
+            this.code.op(Code.ACONST_NULL, 0, Code.OBJECT);
+        }
+        this.code.terminate(Code.ARETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (this.scopes.isEmpty()) {
+            this.loadGlobals();
+            this.code.pushInt(this.globals.indexOf(stmt.name().symbol()));
+        }
+
+        if (stmt.initializer() != null) {
+            this.compile(stmt.initializer());
+        } else {
+            this.code.op(Code.ACONST_NULL, 0, Code.OBJECT);
+        }
+
+        if (this.scopes.isEmpty()) {
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "defineGlobal", "(L" + GLOBALS + ";ILjava/lang/Object;)V"
+            );
+        } else {
+            int local = this.code.newLocal();
+            this.code.store(local);
+            this.scopes.get(this.scopes.size() - 1).add(local);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        Code.Label start = new Code.Label();
+        Code.Label end = new Code.Label();
+
+        this.code.bind(start);
+        this.condition(stmt.condition());
+        this.code.jump(Code.IFEQ, end);
+        this.code.invoke(Code.INVOKESTATIC, TASK, "checkCancelled", "()V");
+        stmt.body().accept(this);
+        if (this.code.reachable) {
+            this.code.jump(Code.GOTO, start);
+        }
+        this.code.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        Binding binding = expr.binding();
+        if (binding.isGlobal()) {
+            this.loadGlobals();
+            this.constant(expr.name(), TOKEN);
+            this.code.pushInt(binding.slot);
+            this.compile(expr.value());
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "assignGlobal",
+                    "(L" + GLOBALS + ";L" + TOKEN + ";ILjava/lang/Object;)Ljava/lang/Object;"
+            );
+        } else if (binding.depth < this.scopes.size()) {
+            this.compile(expr.value());
+            this.code.dup();
+            this.code.store(this.local(binding.depth, binding.slot));
+        } else {
+            this.code.load(CLOSURE_LOCAL, FRAME);
+            this.code.pushInt(this.closureDistance(binding.depth));
+            this.code.pushInt(binding.slot);
+            this.compile(expr.value());
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "assignAt", "(L" + FRAME + ";IILjava/lang/Object;)Ljava/lang/Object;"
+            );
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        this.compile(expr.left());
+        this.compile(expr.right());
+
+        String method = switch (expr.operator().type()) {
+            case BANG_EQUAL -> "notEqual";
+            case EQUAL_EQUAL -> "equal";
+            case GREATER -> "greater";
+            case GREATER_EQUAL -> "greaterEqual";
+            case LESS -> "less";
+            case LESS_EQUAL -> "lessEqual";
+            case MINUS -> "subtract";
+            case PLUS -> "add";
+            case SLASH -> "divide";
+            case STAR -> "multiply";
+            default -> throw new Unsupported("Unexpected binary operator " + expr.operator().type() + ".");
+        };
+
+        if (method.equals("equal") || method.equals("notEqual")) {
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, method, "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;"
+            );
+        } else {
+            this.constant(expr.operator(), TOKEN);
+            this.code.invoke(Code.INVOKESTATIC, RUNTIME, method, BINARY_DESCRIPTOR);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+
+        // obj.name(...) leaves the receiver under the callee so that methods are invoked without being bound.
+        boolean invoke = expr.callee() instanceof Expr.Get;
+        if (expr.callee() instanceof Expr.Get get) {
+            this.compile(get.object());
+            this.code.dup();
+            this.constant(get.name(), TOKEN);
+            this.constant(get.cache(), CACHE);
+            this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "property",
+                    "(Ljava/lang/Object;L" + TOKEN + ";L" + CACHE + ";L" + EVALUATOR + ";)Ljava/lang/Object;"
+            );
+        } else {
+            this.compile(expr.callee());
+        }
+
+        this.code.pushInt(expr.arguments().size());
+        this.code.typeInstruction(Code.ANEWARRAY, Code.OBJECT, 1, OBJECT_ARRAY);
+        for (int i = 0; i < expr.arguments().size(); ++i) {
+            this.code.dup();
+            this.code.pushInt(i);
+            this.compile(expr.arguments().get(i));
+            this.code.op(Code.AASTORE, 3, null);
+        }
+
+        this.constant(expr.paren(), TOKEN);
+        if (invoke) {
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "invoke",
+                    "(L" + EVALUATOR + ";Ljava/lang/Object;Ljava/lang/Object;" + OBJECT_ARRAY + "L" + TOKEN
+                            + ";)Ljava/lang/Object;"
+            );
+        } else {
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "call",
+                    "(L" + EVALUATOR + ";Ljava/lang/Object;" + OBJECT_ARRAY + "L" + TOKEN + ";)Ljava/lang/Object;"
+            );
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        this.compile(expr.object());
+        this.constant(expr.name(), TOKEN);
+        this.constant(expr.cache(), CACHE);
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+        this.code.invoke(
+                Code.INVOKESTATIC, RUNTIME, "get",
+                "(Ljava/lang/Object;L" + TOKEN + ";L" + CACHE + ";L" + EVALUATOR + ";)Ljava/lang/Object;"
+        );
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        this.compile(expr.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value() == null) {
+            this.code.op(Code.ACONST_NULL, 0, Code.OBJECT);
+        } else {
+            this.constant(expr.value(), Code.OBJECT);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        Code.Label end = new Code.Label();
+
+        this.compile(expr.left());
+        this.code.dup();
+        this.code.invoke(Code.INVOKESTATIC, EVALUATOR, "isTruthy", "(Ljava/lang/Object;)Z");
+        this.code.jump(expr.operator().type() == TokenType.OR ? Code.IFNE : Code.IFEQ, end);
+        this.code.op(Code.POP, 1, null);
+        this.compile(expr.right());
+        this.code.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        this.compile(expr.object());
+        this.constant(expr.name(), TOKEN);
+        this.code.invoke(
+                Code.INVOKESTATIC, RUNTIME, "instance", "(Ljava/lang/Object;L" + TOKEN + ";)L" + INSTANCE + ";"
+        );
+        this.compile(expr.value());
+        this.constant(expr.name(), TOKEN);
+        this.constant(expr.cache(), CACHE);
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+        this.code.invoke(
+                Code.INVOKESTATIC, RUNTIME, "set",
+                "(L" + INSTANCE + ";Ljava/lang/Object;L" + TOKEN + ";L" + CACHE + ";L" + EVALUATOR
+                        + ";)Ljava/lang/Object;"
+        );
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        this.read(expr.binding().depth, 0);
+        this.read(expr.binding().depth - 1, 0);
+
+        this.constant(expr.method(), TOKEN);
+        this.constant(expr.cache(), CACHE);
+        this.code.load(EVALUATOR_LOCAL, EVALUATOR);
+        this.code.invoke(
+                Code.INVOKESTATIC, RUNTIME, "superMethod",
+                "(Ljava/lang/Object;Ljava/lang/Object;L" + TOKEN + ";L" + CACHE + ";L" + EVALUATOR
+                        + ";)Ljava/lang/Object;"
+        );
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        this.read(expr.keyword(), expr.binding());
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        this.compile(expr.right());
+
+        if (expr.operator().type() == TokenType.MINUS) {
+            this.constant(expr.operator(), TOKEN);
+            this.code.invoke(
+                    Code.INVOKESTATIC, RUNTIME, "negate", "(Ljava/lang/Object;L" + TOKEN + ";)Ljava/lang/Object;"
+            );
+        } else {
+            this.code.invoke(Code.INVOKESTATIC, RUNTIME, "not", "(Ljava/lang/Object;)Ljava/lang/Object;");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        this.read(expr.name(), expr.binding());
+        return null;
+    }
+}
@@ -0,0 +1,200 @@
+package io.portfolio.ewhitaker.lox.jit;
+
+import java.util.Arrays;
+
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.InlineCache;
+import io.portfolio.ewhitaker.lox.LoxCallable;
+import io.portfolio.ewhitaker.lox.LoxClass;
+import io.portfolio.ewhitaker.lox.LoxFunction;
+import io.portfolio.ewhitaker.lox.LoxInstance;
+import io.portfolio.ewhitaker.lox.Rope;
+import io.portfolio.ewhitaker.lox.RuntimeError;
+import io.portfolio.ewhitaker.lox.Stmt;
+import io.portfolio.ewhitaker.lox.Token;
+
+// Operations that compiled code calls instead of emitting them inline. They are small and static, so the JIT inlines
+// them into the compiled method at each call site.
+public class JitRuntime {
+    public static Object not(Object right) {
+        return !Evaluator.isTruthy(right);
+    }
+
+    public static Object negate(Object right, Token operator) {
+        if (right instanceof Double value) {
+            return -value;
+        }
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
+
+    public static Object add(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l + r;
+        }
+
+        if (Rope.isString(left) && Rope.isString(right)) {
+            return Rope.concat(left, right);
+        }
+
+        throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+    }
+
+    public static Object subtract(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l - r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object multiply(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l * r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object divide(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l / r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object greater(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l > r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object greaterEqual(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l >= r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object less(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l < r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object lessEqual(Object left, Object right, Token operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l <= r;
+        }
+        throw new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static Object equal(Object left, Object right) {
+        return Evaluator.isEqual(left, right);
+    }
+
+    public static Object notEqual(Object left, Object right) {
+        return !Evaluator.isEqual(left, right);
+    }
+
+    public static Object call(Evaluator evaluator, Object callee, Object[] arguments, Token paren) {
+        if (!(callee instanceof LoxCallable function)) {
+            throw new RuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        if (arguments.length != function.arity()) {
+            throw new RuntimeError(
+                    paren, "Expected " + function.arity() + "  arguments but got " + arguments.length + "."
+            );
+        }
+
+        if (function instanceof LoxFunction method) {
+            return method.invoke(evaluator, method.receiver, arguments);
+        }
+
+        try {
+            return function.call(evaluator, Arrays.asList(arguments));
+        } catch (RuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+
+    // The callee of obj.name(...), looked up before the arguments are evaluated. A method comes back as its cache
+    // entry, which can never be a Lox value, so that invoke can call it without binding it to the receiver.
+    public static Object property(Object object, Token name, InlineCache cache, Evaluator evaluator) {
+        if (!(object instanceof LoxInstance instance)) {
+            throw new RuntimeError(name, "Only instances have properties.");
+        }
+
+        InlineCache.Entry entry = cache.property(evaluator.context.execution, instance, name);
+        if (entry.method() != null) {
+            return entry;
+        }
+        return instance.values[entry.index()];
+    }
+
+    public static Object invoke(Evaluator evaluator, Object receiver, Object callee, Object[] arguments, Token paren) {
+        if (callee instanceof InlineCache.Entry entry) {
+            LoxFunction method = entry.method();
+            if (arguments.length != method.arity()) {
+                throw new RuntimeError(
+                        paren, "Expected " + method.arity() + "  arguments but got " + arguments.length + "."
+                );
+            }
+            return method.invoke(evaluator, (LoxInstance) receiver, arguments);
+        }
+
+        return call(evaluator, callee, arguments, paren);
+    }
+
+    public static Object get(Object object, Token name, InlineCache cache, Evaluator evaluator) {
+        if (object instanceof LoxInstance instance) {
+            return cache.get(evaluator.context.execution, instance, name);
+        }
+
+        throw new RuntimeError(name, "Only instances have properties.");
+    }
+
+    public static LoxInstance instance(Object object, Token name) {
+        if (object instanceof LoxInstance instance) {
+            return instance;
+        }
+
+        throw new RuntimeError(name, "Only instances have fields.");
+    }
+
+    public static Object set(LoxInstance instance, Object value, Token name, InlineCache cache, Evaluator evaluator) {
+        cache.set(evaluator.context.execution, instance, name, value);
+        return value;
+    }
+
+    public static Object superMethod(
+            Object superclass, Object object, Token method, InlineCache cache, Evaluator evaluator
+    ) {
+        return cache.superMethod(evaluator.context.execution, (LoxClass) superclass, method).bind((LoxInstance) object);
+    }
+
+    public static Object assignAt(Frame frame, int distance, int slot, Object value) {
+        frame.assignAt(distance, slot, value);
+        return value;
+    }
+
+    public static Object assignGlobal(Globals globals, Token name, int index, Object value) {
+        globals.assign(name, index, value);
+        return value;
+    }
+
+    public static void defineGlobal(Globals globals, int index, Object value) {
+        globals.values[index] = value;
+    }
+
+    public static void print(Evaluator evaluator, Object value) {
+        evaluator.context.out.println(evaluator.stringify(value));
+    }
+
+    // Top-level statements the compiler leaves to the tree walker only ever touch globals.
+    public static void evaluate(Evaluator evaluator, Stmt statement) {
+        evaluator.evaluate(statement);
+    }
+}
@@ -0,0 +1,999 @@
+package io.portfolio.ewhitaker.lox.node;
+
+import java.util.Arrays;
+
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.LoxCallable;
+import io.portfolio.ewhitaker.lox.LoxClass;
+import io.portfolio.ewhitaker.lox.LoxFunction;
+import io.portfolio.ewhitaker.lox.LoxInstance;
+import io.portfolio.ewhitaker.lox.Rope;
+import io.portfolio.ewhitaker.lox.RuntimeError;
+import io.portfolio.ewhitaker.lox.Shape;
+import io.portfolio.ewhitaker.lox.Symbol;
+import io.portfolio.ewhitaker.lox.Token;
+
+public abstract class ExprNode extends Node {
+    public abstract Object execute(Frame frame);
+
+    public static RuntimeError numberOperands(Token operator) {
+        return new RuntimeError(operator, "Operands must be a numbers.");
+    }
+
+    public static final class Literal extends ExprNode {
+        public final Object value;
+
+        public Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.value;
+        }
+    }
+
+    public static final class ReadLocal extends ExprNode {
+        public final int slot;
+
+        public ReadLocal(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return frame.values[this.slot];
+        }
+    }
+
+    public static final class ReadEnclosing extends ExprNode {
+        public final int slot;
+
+        public ReadEnclosing(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return frame.enclosing.values[this.slot];
+        }
+    }
+
+    public static final class ReadAncestor extends ExprNode {
+        public final int depth;
+        public final int slot;
+
+        public ReadAncestor(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return frame.getAt(this.depth, this.slot);
+        }
+    }
+
+    public static final class ReadGlobal extends ExprNode {
+        public final Globals globals;
+        public final Token name;
+        public final int index;
+
+        public ReadGlobal(Globals globals, Token name, int index) {
+            this.globals = globals;
+            this.name = name;
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object value = this.globals.get(this.name, this.index);
+
+            // Globals are never undefined again once they have been defined.
+            this.replace(new ReadDefinedGlobal(this.globals, this.index));
+            return value;
+        }
+    }
+
+    public static final class ReadDefinedGlobal extends ExprNode {
+        public final Globals globals;
+        public final int index;
+
+        public ReadDefinedGlobal(Globals globals, int index) {
+            this.globals = globals;
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.globals.values[this.index];
+        }
+    }
+
+    public static final class WriteLocal extends ExprNode {
+        public final int depth;
+        public final int slot;
+        public ExprNode value;
+
+        public WriteLocal(int depth, int slot, ExprNode value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.value = this.adopt(value);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object value = this.value.execute(frame);
+            frame.assignAt(this.depth, this.slot, value);
+            return value;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.value = (ExprNode) newChild;
+        }
+    }
+
+    public static final class WriteGlobal extends ExprNode {
+        public final Globals globals;
+        public final Token name;
+        public final int index;
+        public ExprNode value;
+
+        public WriteGlobal(Globals globals, Token name, int index, ExprNode value) {
+            this.globals = globals;
+            this.name = name;
+            this.index = index;
+            this.value = this.adopt(value);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object value = this.value.execute(frame);
+            this.globals.assign(this.name, this.index, value);
+            return value;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.value = (ExprNode) newChild;
+        }
+    }
+
+    public abstract static class Binary extends ExprNode {
+        public ExprNode left;
+        public final Token operator;
+        public ExprNode right;
+
+        public Binary(ExprNode left, Token operator, ExprNode right) {
+            this.left = this.adopt(left);
+            this.operator = operator;
+            this.right = this.adopt(right);
+        }
+
+        public abstract Object apply(Object left, Object right);
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            if (this.left == oldChild) {
+                this.left = (ExprNode) newChild;
+            } else if (this.right == oldChild) {
+                this.right = (ExprNode) newChild;
+            }
+        }
+    }
+
+    public static final class Add extends Binary {
+        public Add(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+            return this.apply(left, right);
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) {
+                return this.replace(new AddDouble(this.left, this.operator, this.right)).apply(left, right);
+            }
+
+            if (Rope.isString(left) && Rope.isString(right)) {
+                return this.replace(new AddString(this.left, this.operator, this.right)).apply(left, right);
+            }
+
+            return this.replace(new AddGeneric(this.left, this.operator, this.right)).apply(left, right);
+        }
+    }
+
+    public static final class AddDouble extends Binary {
+        public AddDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+            if (left instanceof Double l && right instanceof Double r) {
+                return l + r;
+            }
+
+            return this.replace(new AddGeneric(this.left, this.operator, this.right)).apply(left, right);
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            return (double) left + (double) right;
+        }
+    }
+
+    public static final class AddString extends Binary {
+        public AddString(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+            if (Rope.isString(left) && Rope.isString(right)) {
+                return Rope.concat(left, right);
+            }
+
+            return this.replace(new AddGeneric(this.left, this.operator, this.right)).apply(left, right);
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            return Rope.concat(left, right);
+        }
+    }
+
+    public static final class AddGeneric extends Binary {
+        public AddGeneric(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+            return this.apply(left, right);
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l + r;
+            }
+
+            if (Rope.isString(left) && Rope.isString(right)) {
+                return Rope.concat(left, right);
+            }
+
+            throw new RuntimeError(this.operator, "Operands must be two numbers or two strings.");
+        }
+    }
+
+    public static final class Subtract extends Binary {
+        public Subtract(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l - r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class Multiply extends Binary {
+        public Multiply(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l * r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class Divide extends Binary {
+        public Divide(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l / r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class Greater extends Binary {
+        public Greater(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l > r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class GreaterEqual extends Binary {
+        public GreaterEqual(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l >= r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class Less extends Binary {
+        public Less(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l < r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class LessEqual extends Binary {
+        public LessEqual(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l <= r;
+            }
+            throw numberOperands(this.operator);
+        }
+    }
+
+    public static final class Equal extends Binary {
+        public Equal(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            return Evaluator.isEqual(left, right);
+        }
+    }
+
+    public static final class NotEqual extends Binary {
+        public NotEqual(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.apply(this.left.execute(frame), this.right.execute(frame));
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            return !Evaluator.isEqual(left, right);
+        }
+    }
+
+    public static final class And extends Binary {
+        public And(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            if (!Evaluator.isTruthy(left)) {
+                return left;
+            }
+            return this.right.execute(frame);
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            return Evaluator.isTruthy(left) ? right : left;
+        }
+    }
+
+    public static final class Or extends Binary {
+        public Or(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            if (Evaluator.isTruthy(left)) {
+                return left;
+            }
+            return this.right.execute(frame);
+        }
+
+        @Override
+        public Object apply(Object left, Object right) {
+            return Evaluator.isTruthy(left) ? left : right;
+        }
+    }
+
+    public static final class Negate extends ExprNode {
+        public final Token operator;
+        public ExprNode right;
+
+        public Negate(Token operator, ExprNode right) {
+            this.operator = operator;
+            this.right = this.adopt(right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object right = this.right.execute(frame);
+            if (right instanceof Double value) {
+                return -value;
+            }
+            throw new RuntimeError(this.operator, "Operand must be a number.");
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.right = (ExprNode) newChild;
+        }
+    }
+
+    public static final class Not extends ExprNode {
+        public ExprNode right;
+
+        public Not(ExprNode right) {
+            this.right = this.adopt(right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return !Evaluator.isTruthy(this.right.execute(frame));
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.right = (ExprNode) newChild;
+        }
+    }
+
+    public abstract static class CallBase extends ExprNode {
+        public ExprNode callee;
+        public final ExprNode[] arguments;
+        public final Token paren;
+
+        public CallBase(ExprNode callee, ExprNode[] arguments, Token paren) {
+            this.callee = this.adopt(callee);
+            this.arguments = arguments;
+            this.paren = paren;
+            for (ExprNode argument : arguments) {
+                this.adopt(argument);
+            }
+        }
+
+        public Object[] evaluateArguments(Frame frame) {
+            Object[] values = new Object[this.arguments.length];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = this.arguments[i].execute(frame);
+            }
+            return values;
+        }
+
+        public abstract Object dispatch(Object callee, Object[] arguments);
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            if (this.callee == oldChild) {
+                this.callee = (ExprNode) newChild;
+                return;
+            }
+
+            for (int i = 0; i < this.arguments.length; ++i) {
+                if (this.arguments[i] == oldChild) {
+                    this.arguments[i] = (ExprNode) newChild;
+                    return;
+                }
+            }
+        }
+    }
+
+    public static final class Call extends CallBase {
+        public Call(ExprNode callee, ExprNode[] arguments, Token paren) {
+            super(callee, arguments, paren);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object callee = this.callee.execute(frame);
+            return this.dispatch(callee, this.evaluateArguments(frame));
+        }
+
+        @Override
+        public Object dispatch(Object callee, Object[] arguments) {
+            if (callee instanceof NodeFunction function && function.arity() == arguments.length) {
+                return this.replace(new CallFunction(this.callee, this.arguments, this.paren, function))
+                        .dispatch(callee, arguments);
+            }
+
+            if (callee instanceof LoxClass klass && klass.arity() == arguments.length) {
+                LoxFunction initializer = klass.initializer;
+                if (initializer == null || initializer instanceof NodeFunction) {
+                    return this.replace(
+                            new CallClass(this.callee, this.arguments, this.paren, klass, (NodeFunction) initializer)
+                    ).dispatch(callee, arguments);
+                }
+            }
+
+            return this.replace(new CallGeneric(this.callee, this.arguments, this.paren)).dispatch(callee, arguments);
+        }
+    }
+
+    public static final class CallFunction extends CallBase {
+        public final NodeFunction target;
+
+        public CallFunction(ExprNode callee, ExprNode[] arguments, Token paren, NodeFunction target) {
+            super(callee, arguments, paren);
+            this.target = target;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object callee = this.callee.execute(frame);
+            return this.dispatch(callee, this.evaluateArguments(frame));
+        }
+
+        @Override
+        public Object dispatch(Object callee, Object[] arguments) {
+            if (callee == this.target) {
+                return this.target.invoke(arguments);
+            }
+
+            return this.replace(new CallGeneric(this.callee, this.arguments, this.paren)).dispatch(callee, arguments);
+        }
+    }
+
+    public static final class CallClass extends CallBase {
+        public final LoxClass klass;
+        public final NodeFunction initializer;
+
+        public CallClass(ExprNode callee, ExprNode[] arguments, Token paren, LoxClass klass, NodeFunction initializer) {
+            super(callee, arguments, paren);
+            this.klass = klass;
+            this.initializer = initializer;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object callee = this.callee.execute(frame);
+            return this.dispatch(callee, this.evaluateArguments(frame));
+        }
+
+        @Override
+        public Object dispatch(Object callee, Object[] arguments) {
+            if (callee == this.klass) {
+                LoxInstance instance = new LoxInstance(this.klass);
+                if (this.initializer != null) {
+                    this.initializer.invokeMethod(instance, arguments);
+                }
+                return instance;
+            }
+
+            return this.replace(new CallGeneric(this.callee, this.arguments, this.paren)).dispatch(callee, arguments);
+        }
+    }
+
+    public static final class CallGeneric extends CallBase {
+        public CallGeneric(ExprNode callee, ExprNode[] arguments, Token paren) {
+            super(callee, arguments, paren);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object callee = this.callee.execute(frame);
+            return this.dispatch(callee, this.evaluateArguments(frame));
+        }
+
+        @Override
+        public Object dispatch(Object callee, Object[] arguments) {
+            if (!(callee instanceof LoxCallable function)) {
+                throw new RuntimeError(this.paren, "Can only call functions and classes.");
+            }
+
+            if (arguments.length != function.arity()) {
+                throw new RuntimeError(
+                        this.paren, "Expected " + function.arity() + "  arguments but got " + arguments.length + "."
+                );
+            }
+
+            if (function instanceof NodeFunction target) {
+                return target.invoke(arguments);
+            }
+
+            try {
+                return function.call(null, Arrays.asList(arguments));
+            } catch (RuntimeError error) {
+                throw error.at(this.paren);
+            }
+        }
+    }
+
+    public abstract static class InvokeBase extends ExprNode {
+        public ExprNode receiver;
+        public final Token name;
+        public final ExprNode[] arguments;
+        public final Token paren;
+
+        public InvokeBase(ExprNode receiver, Token name, ExprNode[] arguments, Token paren) {
+            this.receiver = this.adopt(receiver);
+            this.name = name;
+            this.arguments = arguments;
+            this.paren = paren;
+            for (ExprNode argument : arguments) {
+                this.adopt(argument);
+            }
+        }
+
+        public Object[] evaluateArguments(Frame frame) {
+            Object[] values = new Object[this.arguments.length];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = this.arguments[i].execute(frame);
+            }
+            return values;
+        }
+
+        public abstract Object invoke(Frame frame, Object receiver);
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            if (this.receiver == oldChild) {
+                this.receiver = (ExprNode) newChild;
+                return;
+            }
+
+            for (int i = 0; i < this.arguments.length; ++i) {
+                if (this.arguments[i] == oldChild) {
+                    this.arguments[i] = (ExprNode) newChild;
+                    return;
+                }
+            }
+        }
+    }
+
+    public static final class Invoke extends InvokeBase {
+        public Invoke(ExprNode receiver, Token name, ExprNode[] arguments, Token paren) {
+            super(receiver, name, arguments, paren);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.invoke(frame, this.receiver.execute(frame));
+        }
+
+        @Override
+        public Object invoke(Frame frame, Object receiver) {
+            if (receiver instanceof LoxInstance instance && instance.shape.indexOf(this.name.symbol()) < 0) {
+                LoxFunction method = instance.klass.findMethod(this.name.symbol());
+                if (method instanceof NodeFunction function && function.arity() == this.arguments.length) {
+                    return this.replace(
+                            new InvokeCached(this.receiver, this.name, this.arguments, this.paren, instance.shape, function)
+                    ).invoke(frame, receiver);
+                }
+            }
+
+            return this.replace(new InvokeGeneric(this.receiver, this.name, this.arguments, this.paren))
+                    .invoke(frame, receiver);
+        }
+    }
+
+    // A shape belongs to a single class and has no field named like the method, so it decides the lookup alone.
+    public static final class InvokeCached extends InvokeBase {
+        public final Shape shape;
+        public final NodeFunction method;
+
+        public InvokeCached(
+                ExprNode receiver, Token name, ExprNode[] arguments, Token paren, Shape shape, NodeFunction method
+        ) {
+            super(receiver, name, arguments, paren);
+            this.shape = shape;
+            this.method = method;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.invoke(frame, this.receiver.execute(frame));
+        }
+
+        @Override
+        public Object invoke(Frame frame, Object receiver) {
+            if (receiver instanceof LoxInstance instance && instance.shape == this.shape) {
+                return this.method.invokeMethod(instance, this.evaluateArguments(frame));
+            }
+
+            return this.replace(new InvokeGeneric(this.receiver, this.name, this.arguments, this.paren))
+                    .invoke(frame, receiver);
+        }
+    }
+
+    public static final class InvokeGeneric extends InvokeBase {
+        public final CallGeneric call;
+
+        public InvokeGeneric(ExprNode receiver, Token name, ExprNode[] arguments, Token paren) {
+            super(receiver, name, arguments, paren);
+            this.call = new CallGeneric(null, new ExprNode[0], paren);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.invoke(frame, this.receiver.execute(frame));
+        }
+
+        @Override
+        public Object invoke(Frame frame, Object receiver) {
+            if (!(receiver instanceof LoxInstance instance)) {
+                throw new RuntimeError(this.name, "Only instances have properties.");
+            }
+
+            Symbol name = this.name.symbol();
+            int index = instance.shape.indexOf(name);
+            if (index >= 0) {
+                Object callee = instance.values[index];
+                return this.call.dispatch(callee, this.evaluateArguments(frame));
+            }
+
+            LoxFunction method = instance.klass.findMethod(name);
+            if (method == null) {
+                throw new RuntimeError(this.name, "Undefined property '" + name + "'.");
+            }
+
+            Object[] arguments = this.evaluateArguments(frame);
+            if (method instanceof NodeFunction function && function.arity() == arguments.length) {
+                return function.invokeMethod(instance, arguments);
+            }
+
+            return this.call.dispatch(method.bind(instance), arguments);
+        }
+    }
+
+    public abstract static class GetBase extends ExprNode {
+        public ExprNode object;
+        public final Token name;
+
+        public GetBase(ExprNode object, Token name) {
+            this.object = this.adopt(object);
+            this.name = name;
+        }
+
+        public abstract Object get(Object object);
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.object = (ExprNode) newChild;
+        }
+    }
+
+    public static final class Get extends GetBase {
+        public Get(ExprNode object, Token name) {
+            super(object, name);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.get(this.object.execute(frame));
+        }
+
+        @Override
+        public Object get(Object object) {
+            if (object instanceof LoxInstance instance) {
+                int index = instance.shape.indexOf(this.name.symbol());
+                if (index >= 0) {
+                    return this.replace(new GetField(this.object, this.name, instance.shape, index)).get(object);
+                }
+
+                LoxFunction method = instance.klass.findMethod(this.name.symbol());
+                if (method != null) {
+                    return this.replace(new GetMethod(this.object, this.name, instance.shape, method)).get(object);
+                }
+            }
+
+            return this.replace(new GetGeneric(this.object, this.name)).get(object);
+        }
+    }
+
+    public static final class GetField extends GetBase {
+        public final Shape shape;
+        public final int index;
+
+        public GetField(ExprNode object, Token name, Shape shape, int index) {
+            super(object, name);
+            this.shape = shape;
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.get(this.object.execute(frame));
+        }
+
+        @Override
+        public Object get(Object object) {
+            if (object instanceof LoxInstance instance && instance.shape == this.shape) {
+                return instance.values[this.index];
+            }
+
+            return this.replace(new GetGeneric(this.object, this.name)).get(object);
+        }
+    }
+
+    public static final class GetMethod extends GetBase {
+        public final Shape shape;
+        public final LoxFunction method;
+
+        public GetMethod(ExprNode object, Token name, Shape shape, LoxFunction method) {
+            super(object, name);
+            this.shape = shape;
+            this.method = method;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.get(this.object.execute(frame));
+        }
+
+        @Override
+        public Object get(Object object) {
+            if (object instanceof LoxInstance instance && instance.shape == this.shape) {
+                return this.method.bind(instance);
+            }
+
+            return this.replace(new GetGeneric(this.object, this.name)).get(object);
+        }
+    }
+
+    public static final class GetGeneric extends GetBase {
+        public GetGeneric(ExprNode object, Token name) {
+            super(object, name);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.get(this.object.execute(frame));
+        }
+
+        @Override
+        public Object get(Object object) {
+            if (object instanceof LoxInstance instance) {
+                return instance.get(this.name);
+            }
+
+            throw new RuntimeError(this.name, "Only instances have properties.");
+        }
+    }
+
+    public static final class Set extends ExprNode {
+        public ExprNode object;
+        public final Token name;
+        public ExprNode value;
+
+        public Set(ExprNode object, Token name, ExprNode value) {
+            this.object = this.adopt(object);
+            this.name = name;
+            this.value = this.adopt(value);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object object = this.object.execute(frame);
+
+            if (!(object instanceof LoxInstance instance)) {
+                throw new RuntimeError(this.name, "Only instances have fields.");
+            }
+
+            Object value = this.value.execute(frame);
+            instance.set(this.name, value);
+            return value;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            if (this.object == oldChild) {
+                this.object = (ExprNode) newChild;
+            } else if (this.value == oldChild) {
+                this.value = (ExprNode) newChild;
+            }
+        }
+    }
+
+    public static final class Super extends ExprNode {
+        public final Token method;
+        public final int depth;
+
+        public Super(Token method, int depth) {
+            this.method = method;
+            this.depth = depth;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            LoxClass superclass = (LoxClass) frame.getAt(this.depth, 0);
+            LoxInstance object = (LoxInstance) frame.getAt(this.depth - 1, 0);
+
+            LoxFunction method = superclass.findMethod(this.method.symbol());
+            if (method == null) {
+                throw new RuntimeError(this.method, "Undefined property '" + this.method.lexeme() + "'.");
+            }
+
+            return method.bind(object);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.portfolio.ewhitaker.lox.node;
+
+import io.portfolio.ewhitaker.lox.Stmt;
+
+public class FunctionBody extends Node {
+    public final Stmt.Function declaration;
+    public final StmtNode[] statements;
+    public final int slots;
+
+    public FunctionBody(Stmt.Function declaration, StmtNode[] statements, int slots) {
+        this.declaration = declaration;
+        this.statements = statements;
+        this.slots = slots;
+        for (StmtNode statement : statements) {
+            this.adopt(statement);
+        }
+    }
+}
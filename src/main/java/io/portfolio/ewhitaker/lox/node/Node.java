@@ -0,0 +1,22 @@
+package io.portfolio.ewhitaker.lox.node;
+
+public abstract class Node {
+    public Node parent = null;
+
+    public <T extends Node> T adopt(T child) {
+        if (child != null) {
+            child.parent = this;
+        }
+        return child;
+    }
+
+    public <T extends Node> T replace(T node) {
+        this.parent.replaceChild(this, node);
+        node.parent = this.parent;
+        return node;
+    }
+
+    public void replaceChild(Node oldChild, Node newChild) {
+        throw new IllegalStateException(this.getClass().getSimpleName() + " has no replaceable children.");
+    }
+}
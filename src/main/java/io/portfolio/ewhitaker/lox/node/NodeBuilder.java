@@ -0,0 +1,250 @@
+package io.portfolio.ewhitaker.lox.node;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import io.portfolio.ewhitaker.lox.Binding;
+import io.portfolio.ewhitaker.lox.Expr;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.Stmt;
+import io.portfolio.ewhitaker.lox.Token;
+
+public class NodeBuilder implements Expr.Visitor<ExprNode>, Stmt.Visitor<StmtNode> {
+    public final Globals globals;
+    public final PrintStream out;
+    public int scopeDepth = 0;
+
+    public NodeBuilder(Globals globals, PrintStream out) {
+        this.globals = globals;
+        this.out = out;
+    }
+
+    public StmtNode[] build(List<Stmt> statements) {
+        StmtNode[] nodes = new StmtNode[statements.size()];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = statements.get(i).accept(this);
+        }
+        return nodes;
+    }
+
+    public StmtNode build(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    public ExprNode build(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    public ExprNode[] arguments(List<Expr> exprs) {
+        ExprNode[] nodes = new ExprNode[exprs.size()];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = exprs.get(i).accept(this);
+        }
+        return nodes;
+    }
+
+    public FunctionBody function(Stmt.Function stmt, boolean isMethod) {
+        ++this.scopeDepth;
+        StmtNode[] body = this.build(stmt.body());
+        --this.scopeDepth;
+
+        int slots = stmt.params().size() + declarations(stmt.body());
+        return new FunctionBody(stmt, body, isMethod ? slots + 1 : slots);
+    }
+
+    // Only top-level declarations are globals; everything else takes the next slot in its frame.
+    public int globalIndex(Token name) {
+        return this.scopeDepth == 0 ? this.globals.indexOf(name.symbol()) : -1;
+    }
+
+    public ExprNode read(Token name, Binding binding) {
+        if (binding.isGlobal()) {
+            return new ExprNode.ReadGlobal(this.globals, name, binding.slot);
+        }
+
+        return switch (binding.depth) {
+            case 0 -> new ExprNode.ReadLocal(binding.slot);
+            case 1 -> new ExprNode.ReadEnclosing(binding.slot);
+            default -> new ExprNode.ReadAncestor(binding.depth, binding.slot);
+        };
+    }
+
+    public static int declarations(List<Stmt> statements) {
+        int count = 0;
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public StmtNode visitBlockStmt(Stmt.Block stmt) {
+        ++this.scopeDepth;
+        StmtNode[] statements = this.build(stmt.statements());
+        --this.scopeDepth;
+
+        if (stmt.scope().inline) {
+            return new StmtNode.Inline(statements);
+        }
+        return new StmtNode.Block(statements, stmt.scope().size);
+    }
+
+    @Override
+    public StmtNode visitClassStmt(Stmt.Class stmt) {
+        int index = this.globalIndex(stmt.name());
+
+        ExprNode superclass = null;
+        Token superclassName = null;
+        if (stmt.superclass() != null) {
+            superclass = this.build(stmt.superclass());
+            superclassName = stmt.superclass().name();
+        }
+
+        FunctionBody[] methods = new FunctionBody[stmt.methods().size()];
+        for (int i = 0; i < methods.length; ++i) {
+            methods[i] = this.function(stmt.methods().get(i), true);
+        }
+
+        return new StmtNode.Class(stmt.name(), this.globals, index, superclass, superclassName, methods);
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt(Stmt.Expression stmt) {
+        return new StmtNode.Expression(this.build(stmt.expression()));
+    }
+
+    @Override
+    public StmtNode visitFunctionStmt(Stmt.Function stmt) {
+        int index = this.globalIndex(stmt.name());
+        return new StmtNode.Function(this.function(stmt, false), this.globals, index);
+    }
+
+    @Override
+    public StmtNode visitIfStmt(Stmt.If stmt) {
+        return new StmtNode.If(
+                this.build(stmt.condition()), this.build(stmt.thenBranch()), this.build(stmt.elseBranch())
+        );
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(Stmt.Print stmt) {
+        return new StmtNode.Print(this.out, this.build(stmt.expression()));
+    }
+
+    @Override
+    public StmtNode visitReturnStmt(Stmt.Return stmt) {
+        return new StmtNode.ReturnValue(this.build(stmt.value()));
+    }
+
+    @Override
+    public StmtNode visitVarStmt(Stmt.Var stmt) {
+        int index = this.globalIndex(stmt.name());
+        return new StmtNode.Var(this.globals, index, this.build(stmt.initializer()));
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(Stmt.While stmt) {
+        return new StmtNode.While(this.build(stmt.condition()), this.build(stmt.body()));
+    }
+
+    @Override
+    public ExprNode visitAssignExpr(Expr.Assign expr) {
+        ExprNode value = this.build(expr.value());
+
+        Binding binding = expr.binding();
+        if (binding.isGlobal()) {
+            return new ExprNode.WriteGlobal(this.globals, expr.name(), binding.slot, value);
+        }
+        return new ExprNode.WriteLocal(binding.depth, binding.slot, value);
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr(Expr.Binary expr) {
+        ExprNode left = this.build(expr.left());
+        ExprNode right = this.build(expr.right());
+        Token operator = expr.operator();
+
+        return switch (operator.type()) {
+            case BANG_EQUAL -> new ExprNode.NotEqual(left, operator, right);
+            case EQUAL_EQUAL -> new ExprNode.Equal(left, operator, right);
+            case GREATER -> new ExprNode.Greater(left, operator, right);
+            case GREATER_EQUAL -> new ExprNode.GreaterEqual(left, operator, right);
+            case LESS -> new ExprNode.Less(left, operator, right);
+            case LESS_EQUAL -> new ExprNode.LessEqual(left, operator, right);
+            case MINUS -> new ExprNode.Subtract(left, operator, right);
+            case PLUS -> new ExprNode.Add(left, operator, right);
+            case SLASH -> new ExprNode.Divide(left, operator, right);
+            case STAR -> new ExprNode.Multiply(left, operator, right);
+            default -> throw new IllegalStateException("Unexpected binary operator " + operator.type() + ".");
+        };
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Expr.Call expr) {
+        ExprNode[] arguments = this.arguments(expr.arguments());
+
+        if (expr.callee() instanceof Expr.Get get) {
+            return new ExprNode.Invoke(this.build(get.object()), get.name(), arguments, expr.paren());
+        }
+
+        return new ExprNode.Call(this.build(expr.callee()), arguments, expr.paren());
+    }
+
+    @Override
+    public ExprNode visitGetExpr(Expr.Get expr) {
+        return new ExprNode.Get(this.build(expr.object()), expr.name());
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+        return this.build(expr.expression());
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Expr.Literal expr) {
+        return new ExprNode.Literal(expr.value());
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Expr.Logical expr) {
+        ExprNode left = this.build(expr.left());
+        ExprNode right = this.build(expr.right());
+
+        return switch (expr.operator().type()) {
+            case OR -> new ExprNode.Or(left, expr.operator(), right);
+            default -> new ExprNode.And(left, expr.operator(), right);
+        };
+    }
+
+    @Override
+    public ExprNode visitSetExpr(Expr.Set expr) {
+        return new ExprNode.Set(this.build(expr.object()), expr.name(), this.build(expr.value()));
+    }
+
+    @Override
+    public ExprNode visitSuperExpr(Expr.Super expr) {
+        return new ExprNode.Super(expr.method(), expr.binding().depth);
+    }
+
+    @Override
+    public ExprNode visitThisExpr(Expr.This expr) {
+        return this.read(expr.keyword(), expr.binding());
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Expr.Unary expr) {
+        ExprNode right = this.build(expr.right());
+
+        return switch (expr.operator().type()) {
+            case MINUS -> new ExprNode.Negate(expr.operator(), right);
+            default -> new ExprNode.Not(right);
+        };
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Expr.Variable expr) {
+        return this.read(expr.name(), expr.binding());
+    }
+}
@@ -0,0 +1,60 @@
+package io.portfolio.ewhitaker.lox.node;
+
+import io.portfolio.ewhitaker.lox.Completion;
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+import io.portfolio.ewhitaker.lox.LoxFunction;
+import io.portfolio.ewhitaker.lox.LoxInstance;
+
+public class NodeFunction extends LoxFunction {
+    public final FunctionBody body;
+
+    public NodeFunction(FunctionBody body, Frame closure, boolean isInitializer) {
+        this(body, closure, isInitializer, null);
+    }
+
+    public NodeFunction(FunctionBody body, Frame closure, boolean isInitializer, LoxInstance receiver) {
+        super(body.declaration, closure, isInitializer, receiver);
+        this.body = body;
+    }
+
+    @Override
+    public LoxFunction bind(LoxInstance instance) {
+        return new NodeFunction(this.body, this.closure, this.isInitializer, instance);
+    }
+
+    @Override
+    public Object invoke(Evaluator evaluator, LoxInstance receiver, Object[] arguments) {
+        return this.execute(receiver, arguments);
+    }
+
+    public Object invoke(Object[] arguments) {
+        return this.execute(this.receiver, arguments);
+    }
+
+    public Object invokeMethod(LoxInstance receiver, Object[] arguments) {
+        return this.execute(receiver, arguments);
+    }
+
+    public Object execute(LoxInstance receiver, Object[] arguments) {
+        Frame frame = new Frame(this.closure, this.body.slots);
+        if (receiver != null) {
+            frame.define(receiver);
+        }
+        for (Object argument : arguments) {
+            frame.define(argument);
+        }
+
+        for (StmtNode statement : this.body.statements) {
+            if (statement.execute(frame) == Completion.RETURN) {
+                return this.isInitializer ? receiver : frame.returnValue;
+            }
+        }
+
+        if (this.isInitializer) {
+            return receiver;
+        }
+
+        return null;
+    }
+}
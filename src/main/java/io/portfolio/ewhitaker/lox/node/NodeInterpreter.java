@@ -0,0 +1,31 @@
+package io.portfolio.ewhitaker.lox.node;
+
+import java.util.List;
+
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.LoxContext;
+import io.portfolio.ewhitaker.lox.Natives;
+import io.portfolio.ewhitaker.lox.RuntimeError;
+import io.portfolio.ewhitaker.lox.Stmt;
+
+public class NodeInterpreter {
+    public final LoxContext context;
+    public final Globals globals;
+
+    public NodeInterpreter(LoxContext context) {
+        this.context = context;
+        this.globals = new Globals(context.engine.symbols);
+        Natives.define(this.globals, context);
+    }
+
+    public void interpret(List<Stmt> statements) {
+        StmtNode[] nodes = new NodeBuilder(this.globals, this.context.out).build(statements);
+        try {
+            for (StmtNode node : nodes) {
+                node.execute(null);
+            }
+        } catch (RuntimeError error) {
+            this.context.reporter.runtimeError(error);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package io.portfolio.ewhitaker.lox.node;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.portfolio.ewhitaker.lox.Completion;
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Frame;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.LoxClass;
+import io.portfolio.ewhitaker.lox.LoxFunction;
+import io.portfolio.ewhitaker.lox.LoxTask;
+import io.portfolio.ewhitaker.lox.RuntimeError;
+import io.portfolio.ewhitaker.lox.Symbol;
+import io.portfolio.ewhitaker.lox.Token;
+
+// Statements finish as the evaluator's do: a RETURN unwinds through the enclosing nodes back to NodeFunction, with the
+// value left in the frame the return ran in and carried out through each block's frame on the way.
+public abstract class StmtNode extends Node {
+    public abstract Completion execute(Frame frame);
+
+    public static String stringify(Object object) {
+        if (object == null) {
+            return "nil";
+        }
+
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return object.toString();
+    }
+
+    // Declarations either fill the next slot of the current frame or, at the top level, a global by index.
+    public static void define(Frame frame, Globals globals, int index, Object value) {
+        if (frame == null) {
+            globals.values[index] = value;
+        } else {
+            frame.define(value);
+        }
+    }
+
+    public static final class Block extends StmtNode {
+        public final StmtNode[] statements;
+        public final int slots;
+
+        public Block(StmtNode[] statements, int slots) {
+            this.statements = statements;
+            this.slots = slots;
+            for (StmtNode statement : statements) {
+                this.adopt(statement);
+            }
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            Frame inner = new Frame(frame, this.slots);
+            for (StmtNode statement : this.statements) {
+                if (statement.execute(inner) == Completion.RETURN) {
+                    frame.returnValue = inner.returnValue;
+                    return Completion.RETURN;
+                }
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    // A block that runs in the enclosing frame, giving back the slots its declarations took when it exits.
+    public static final class Inline extends StmtNode {
+        public final StmtNode[] statements;
+
+        public Inline(StmtNode[] statements) {
+            this.statements = statements;
+            for (StmtNode statement : statements) {
+                this.adopt(statement);
+            }
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            int count = frame == null ? 0 : frame.count;
+            for (StmtNode statement : this.statements) {
+                if (statement.execute(frame) == Completion.RETURN) {
+                    return Completion.RETURN;
+                }
+            }
+
+            if (frame != null) {
+                frame.count = count;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    public static final class Class extends StmtNode {
+        public final Token name;
+        public final Globals globals;
+        public final int index;
+        public ExprNode superclass;
+        public final Token superclassName;
+        public final FunctionBody[] methods;
+
+        public Class(
+                Token name, Globals globals, int index, ExprNode superclass, Token superclassName,
+                FunctionBody[] methods
+        ) {
+            this.name = name;
+            this.globals = globals;
+            this.index = index;
+            this.superclass = this.adopt(superclass);
+            this.superclassName = superclassName;
+            this.methods = methods;
+            for (FunctionBody method : methods) {
+                this.adopt(method);
+            }
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            Object superclass = null;
+            if (this.superclass != null) {
+                superclass = this.superclass.execute(frame);
+                if (!(superclass instanceof LoxClass)) {
+                    throw new RuntimeError(this.superclassName, "Superclass must be a class.");
+                }
+            }
+
+            int slot = frame == null ? -1 : frame.count;
+            define(frame, this.globals, this.index, null);
+
+            Frame closure = frame;
+            if (superclass != null) {
+                closure = new Frame(frame, 1);
+                closure.define(superclass);
+            }
+
+            Map<Symbol, LoxFunction> methods = new HashMap<>();
+            for (FunctionBody method : this.methods) {
+                Symbol name = method.declaration.name().symbol();
+                methods.put(name, new NodeFunction(method, closure, name == Symbol.INIT));
+            }
+
+            LoxClass klass = new LoxClass(this.name.lexeme(), (LoxClass) superclass, methods);
+
+            if (frame == null) {
+                this.globals.values[this.index] = klass;
+            } else {
+                frame.values[slot] = klass;
+            }
+            return Completion.NORMAL;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.superclass = (ExprNode) newChild;
+        }
+    }
+
+    public static final class Expression extends StmtNode {
+        public ExprNode expression;
+
+        public Expression(ExprNode expression) {
+            this.expression = this.adopt(expression);
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            this.expression.execute(frame);
+            return Completion.NORMAL;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.expression = (ExprNode) newChild;
+        }
+    }
+
+    public static final class Function extends StmtNode {
+        public final FunctionBody body;
+        public final Globals globals;
+        public final int index;
+
+        public Function(FunctionBody body, Globals globals, int index) {
+            this.body = this.adopt(body);
+            this.globals = globals;
+            this.index = index;
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            define(frame, this.globals, this.index, new NodeFunction(this.body, frame, false));
+            return Completion.NORMAL;
+        }
+    }
+
+    public static final class If extends StmtNode {
+        public ExprNode condition;
+        public final StmtNode thenBranch;
+        public final StmtNode elseBranch;
+
+        public If(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+            this.condition = this.adopt(condition);
+            this.thenBranch = this.adopt(thenBranch);
+            this.elseBranch = this.adopt(elseBranch);
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            if (Evaluator.isTruthy(this.condition.execute(frame))) {
+                return this.thenBranch.execute(frame);
+            } else if (this.elseBranch != null) {
+                return this.elseBranch.execute(frame);
+            }
+            return Completion.NORMAL;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.condition = (ExprNode) newChild;
+        }
+    }
+
+    public static final class Print extends StmtNode {
+        public final PrintStream out;
+        public ExprNode expression;
+
+        public Print(PrintStream out, ExprNode expression) {
+            this.out = out;
+            this.expression = this.adopt(expression);
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            this.out.println(stringify(this.expression.execute(frame)));
+            return Completion.NORMAL;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.expression = (ExprNode) newChild;
+        }
+    }
+
+    public static final class ReturnValue extends StmtNode {
+        public ExprNode value;
+
+        public ReturnValue(ExprNode value) {
+            this.value = this.adopt(value);
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            Object value = null;
+            if (this.value != null) {
+                value = this.value.execute(frame);
+            }
+
+            frame.returnValue = value;
+            return Completion.RETURN;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.value = (ExprNode) newChild;
+        }
+    }
+
+    public static final class Var extends StmtNode {
+        public final Globals globals;
+        public final int index;
+        public ExprNode initializer;
+
+        public Var(Globals globals, int index, ExprNode initializer) {
+            this.globals = globals;
+            this.index = index;
+            this.initializer = this.adopt(initializer);
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            Object value = null;
+            if (this.initializer != null) {
+                value = this.initializer.execute(frame);
+            }
+
+            define(frame, this.globals, this.index, value);
+            return Completion.NORMAL;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.initializer = (ExprNode) newChild;
+        }
+    }
+
+    public static final class While extends StmtNode {
+        public ExprNode condition;
+        public final StmtNode body;
+
+        public While(ExprNode condition, StmtNode body) {
+            this.condition = this.adopt(condition);
+            this.body = this.adopt(body);
+        }
+
+        @Override
+        public Completion execute(Frame frame) {
+            while (Evaluator.isTruthy(this.condition.execute(frame))) {
+                LoxTask.checkCancelled();
+                if (this.body.execute(frame) == Completion.RETURN) {
+                    return Completion.RETURN;
+                }
+            }
+            return Completion.NORMAL;
+        }
+
+        @Override
+        public void replaceChild(Node oldChild, Node newChild) {
+            this.condition = (ExprNode) newChild;
+        }
+    }
+}
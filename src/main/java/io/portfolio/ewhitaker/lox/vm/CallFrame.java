@@ -0,0 +1,7 @@
+package io.portfolio.ewhitaker.lox.vm;
+
+public class CallFrame {
+    public Obj.Closure closure;
+    public int ip;
+    public int slots;
+}
@@ -0,0 +1,52 @@
+package io.portfolio.ewhitaker.lox.vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.portfolio.ewhitaker.lox.Shape;
+
+public class Chunk {
+    // What a property, invoke or super instruction found last time, keyed on the receiver's shape or the superclass:
+    // the field's index and the shape after setting it, or the method. Entries are immutable, so a chunk shared by
+    // VMs on several threads at most misses more.
+    public record Cache(Object key, int index, Shape next, Obj.Closure method) {
+    }
+
+    public byte[] code = new byte[8];
+    public int[] lines = new int[8];
+    public int count = 0;
+    public Object[] constants = new Object[8];
+    public int constantCount = 0;
+    public final Map<Object, Integer> constantIndices = new HashMap<>();
+    // By the offset of the instruction, made when the chunk first runs.
+    public Cache[] caches = null;
+
+    public void write(int b, int line) {
+        if (this.count == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+            this.lines = Arrays.copyOf(this.lines, this.lines.length * 2);
+        }
+
+        this.code[this.count] = (byte) b;
+        this.lines[this.count] = line;
+        ++this.count;
+    }
+
+    public int addConstant(Object value) {
+        // Functions are never shared, everything else is immutable and can be.
+        if (!(value instanceof Obj)) {
+            Integer index = this.constantIndices.get(value);
+            if (index != null) {
+                return index;
+            }
+            this.constantIndices.put(value, this.constantCount);
+        }
+
+        if (this.constantCount == this.constants.length) {
+            this.constants = Arrays.copyOf(this.constants, this.constants.length * 2);
+        }
+        this.constants[this.constantCount] = value;
+        return this.constantCount++;
+    }
+}
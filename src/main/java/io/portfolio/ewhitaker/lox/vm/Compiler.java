@@ -0,0 +1,640 @@
+package io.portfolio.ewhitaker.lox.vm;
+
+import java.util.List;
+
+import io.portfolio.ewhitaker.lox.Binding;
+import io.portfolio.ewhitaker.lox.Expr;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.Reporter;
+import io.portfolio.ewhitaker.lox.Stmt;
+import io.portfolio.ewhitaker.lox.Token;
+import io.portfolio.ewhitaker.lox.TokenType;
+
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    public static final int UINT8_COUNT = 256;
+    public static final int UINT16_MAX = 65535;
+
+    public enum FunctionType {
+        FUNCTION,
+        INITIALIZER,
+        METHOD,
+        SCRIPT
+    }
+
+    public static class Local {
+        public final String name;
+        public final int depth;
+        public boolean isCaptured = false;
+
+        public Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+
+    public record Upvalue(int index, boolean isLocal) {
+    }
+
+    public static class ClassCompiler {
+        public final ClassCompiler enclosing;
+        public boolean hasSuperclass = false;
+
+        public ClassCompiler(ClassCompiler enclosing) {
+            this.enclosing = enclosing;
+        }
+    }
+
+    public final Compiler enclosing;
+    public final Globals globals;
+    public final Reporter reporter;
+    public final Obj.Function function;
+    public final FunctionType type;
+
+    public final Local[] locals = new Local[UINT8_COUNT];
+    public int localCount = 0;
+    public final Upvalue[] upvalues = new Upvalue[UINT8_COUNT];
+    public int scopeDepth = 0;
+
+    public ClassCompiler currentClass = null;
+    public int line = 1;
+    public boolean hadError = false;
+
+    public Compiler(Compiler enclosing, Globals globals, Reporter reporter, FunctionType type, String name) {
+        this.enclosing = enclosing;
+        this.globals = globals;
+        this.reporter = reporter;
+        this.type = type;
+        this.function = new Obj.Function(name);
+
+        if (enclosing != null) {
+            this.currentClass = enclosing.currentClass;
+            this.line = enclosing.line;
+        }
+
+        // Slot zero holds the receiver for methods and the callee otherwise.
+        String slotZero = "";
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            slotZero = "this";
+        }
+        this.locals[this.localCount++] = new Local(slotZero, 0);
+    }
+
+    public static Obj.Function compile(Globals globals, Reporter reporter, List<Stmt> statements) {
+        Compiler compiler = new Compiler(null, globals, reporter, FunctionType.SCRIPT, null);
+        for (Stmt statement : statements) {
+            compiler.compile(statement);
+        }
+        compiler.emitReturn();
+
+        return compiler.hadError ? null : compiler.function;
+    }
+
+    public void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    public void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        this.beginScope();
+        for (Stmt statement : stmt.statements()) {
+            this.compile(statement);
+        }
+        this.endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        Token className = stmt.name();
+        this.line = className.line();
+
+        int nameConstant = this.makeConstant(className.lexeme());
+        this.emitShortOp(OpCode.OP_CLASS, nameConstant);
+        this.defineVariable(className);
+
+        ClassCompiler classCompiler = new ClassCompiler(this.currentClass);
+        this.currentClass = classCompiler;
+
+        if (stmt.superclass() != null) {
+            this.compile(stmt.superclass());
+
+            this.beginScope();
+            this.addLocal("super");
+
+            this.loadVariable(className.lexeme());
+            this.emitByte(OpCode.OP_INHERIT);
+            classCompiler.hasSuperclass = true;
+        }
+
+        this.loadVariable(className.lexeme());
+        for (Stmt.Function method : stmt.methods()) {
+            FunctionType type = FunctionType.METHOD;
+            if (method.name().lexeme().equals("init")) {
+                type = FunctionType.INITIALIZER;
+            }
+
+            this.function(method, type);
+            this.line = method.name().line();
+            this.emitShortOp(OpCode.OP_METHOD, this.makeConstant(method.name().symbol()));
+        }
+        this.emitByte(OpCode.OP_POP);
+
+        if (classCompiler.hasSuperclass) {
+            this.endScope();
+        }
+
+        this.currentClass = this.currentClass.enclosing;
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        this.compile(stmt.expression());
+        this.emitByte(OpCode.OP_POP);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        this.line = stmt.name().line();
+        if (this.scopeDepth > 0) {
+            // A local function is in scope inside its own body so it can recurse.
+            this.addLocal(stmt.name().lexeme());
+            this.function(stmt, FunctionType.FUNCTION);
+        } else {
+            this.function(stmt, FunctionType.FUNCTION);
+            this.defineVariable(stmt.name());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        this.compile(stmt.condition());
+
+        int thenJump = this.emitJump(OpCode.OP_JUMP_IF_FALSE);
+        this.emitByte(OpCode.OP_POP);
+        this.compile(stmt.thenBranch());
+
+        int elseJump = this.emitJump(OpCode.OP_JUMP);
+
+        this.patchJump(thenJump);
+        this.emitByte(OpCode.OP_POP);
+
+        if (stmt.elseBranch() != null) {
+            this.compile(stmt.elseBranch());
+        }
+        this.patchJump(elseJump);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        this.compile(stmt.expression());
+        this.emitByte(OpCode.OP_PRINT);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        this.line = stmt.keyword().line();
+        if (stmt.value() == null) {
+            this.emitReturn();
+        } else {
+            this.compile(stmt.value());
+            this.emitByte(OpCode.OP_RETURN);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        this.line = stmt.name().line();
+        if (stmt.initializer() != null) {
+            this.compile(stmt.initializer());
+        } else {
+            this.emitByte(OpCode.OP_NIL);
+        }
+
+        this.defineVariable(stmt.name());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int loopStart = this.currentChunk().count;
+        this.compile(stmt.condition());
+
+        int exitJump = this.emitJump(OpCode.OP_JUMP_IF_FALSE);
+        this.emitByte(OpCode.OP_POP);
+        this.compile(stmt.body());
+        this.emitLoop(loopStart);
+
+        this.patchJump(exitJump);
+        this.emitByte(OpCode.OP_POP);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        this.compile(expr.value());
+        this.line = expr.name().line();
+        this.namedVariable(expr.name(), expr.binding(), true);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        this.compile(expr.left());
+        this.compile(expr.right());
+
+        this.line = expr.operator().line();
+        switch (expr.operator().type()) {
+            case BANG_EQUAL -> this.emitBytes(OpCode.OP_EQUAL, OpCode.OP_NOT);
+            case EQUAL_EQUAL -> this.emitByte(OpCode.OP_EQUAL);
+            case GREATER -> this.emitByte(OpCode.OP_GREATER);
+            case GREATER_EQUAL -> this.emitByte(OpCode.OP_GREATER_EQUAL);
+            case LESS -> this.emitByte(OpCode.OP_LESS);
+            case LESS_EQUAL -> this.emitByte(OpCode.OP_LESS_EQUAL);
+            case MINUS -> this.emitByte(OpCode.OP_SUBTRACT);
+            case PLUS -> this.emitByte(OpCode.OP_ADD);
+            case SLASH -> this.emitByte(OpCode.OP_DIVIDE);
+            case STAR -> this.emitByte(OpCode.OP_MULTIPLY);
+            default -> {
+            } // Unreachable.
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (expr.callee() instanceof Expr.Get get) {
+            this.compile(get.object());
+            int argCount = this.arguments(expr);
+            this.line = expr.paren().line();
+            this.emitShortOp(OpCode.OP_INVOKE, this.makeConstant(get.name().symbol()));
+            this.emitByte(argCount);
+            return null;
+        }
+
+        if (expr.callee() instanceof Expr.Super sup) {
+            this.line = sup.keyword().line();
+            this.loadVariable("this");
+            int argCount = this.arguments(expr);
+            this.line = sup.keyword().line();
+            this.namedVariable(sup.keyword(), sup.binding(), false);
+            this.line = expr.paren().line();
+            this.emitShortOp(OpCode.OP_SUPER_INVOKE, this.makeConstant(sup.method().symbol()));
+            this.emitByte(argCount);
+            return null;
+        }
+
+        this.compile(expr.callee());
+        int argCount = this.arguments(expr);
+        this.line = expr.paren().line();
+        this.emitBytes(OpCode.OP_CALL, argCount);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        this.compile(expr.object());
+        this.line = expr.name().line();
+        this.emitShortOp(OpCode.OP_GET_PROPERTY, this.makeConstant(expr.name().symbol()));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        this.compile(expr.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value();
+        if (value == null) {
+            this.emitByte(OpCode.OP_NIL);
+        } else if (value == Boolean.TRUE) {
+            this.emitByte(OpCode.OP_TRUE);
+        } else if (value == Boolean.FALSE) {
+            this.emitByte(OpCode.OP_FALSE);
+        } else {
+            this.emitShortOp(OpCode.OP_CONSTANT, this.makeConstant(value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        this.compile(expr.left());
+
+        if (expr.operator().type() == TokenType.OR) {
+            int elseJump = this.emitJump(OpCode.OP_JUMP_IF_FALSE);
+            int endJump = this.emitJump(OpCode.OP_JUMP);
+
+            this.patchJump(elseJump);
+            this.emitByte(OpCode.OP_POP);
+
+            this.compile(expr.right());
+            this.patchJump(endJump);
+        } else {
+            int endJump = this.emitJump(OpCode.OP_JUMP_IF_FALSE);
+
+            this.emitByte(OpCode.OP_POP);
+            this.compile(expr.right());
+
+            this.patchJump(endJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        this.compile(expr.object());
+        this.compile(expr.value());
+        this.line = expr.name().line();
+        this.emitShortOp(OpCode.OP_SET_PROPERTY, this.makeConstant(expr.name().symbol()));
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        this.line = expr.keyword().line();
+        this.loadVariable("this");
+        this.namedVariable(expr.keyword(), expr.binding(), false);
+        this.line = expr.method().line();
+        this.emitShortOp(OpCode.OP_GET_SUPER, this.makeConstant(expr.method().symbol()));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        this.line = expr.keyword().line();
+        this.namedVariable(expr.keyword(), expr.binding(), false);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        this.compile(expr.right());
+
+        this.line = expr.operator().line();
+        switch (expr.operator().type()) {
+            case BANG -> this.emitByte(OpCode.OP_NOT);
+            case MINUS -> this.emitByte(OpCode.OP_NEGATE);
+            default -> {
+            } // Unreachable.
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        this.line = expr.name().line();
+        this.namedVariable(expr.name(), expr.binding(), false);
+        return null;
+    }
+
+    public int arguments(Expr.Call expr) {
+        for (Expr argument : expr.arguments()) {
+            this.compile(argument);
+        }
+        return expr.arguments().size();
+    }
+
+    public void function(Stmt.Function stmt, FunctionType type) {
+        Compiler compiler = new Compiler(this, this.globals, this.reporter, type, stmt.name().lexeme());
+        compiler.line = stmt.name().line();
+        compiler.beginScope();
+
+        for (Token param : stmt.params()) {
+            ++compiler.function.arity;
+            compiler.addLocal(param.lexeme());
+        }
+
+        for (Stmt statement : stmt.body()) {
+            compiler.compile(statement);
+        }
+        compiler.emitReturn();
+
+        Obj.Function function = compiler.function;
+        this.emitShortOp(OpCode.OP_CLOSURE, this.makeConstant(function));
+
+        for (int i = 0; i < function.upvalueCount; ++i) {
+            this.emitByte(compiler.upvalues[i].isLocal() ? 1 : 0);
+            this.emitByte(compiler.upvalues[i].index());
+        }
+    }
+
+    public void namedVariable(Token name, Binding binding, boolean assign) {
+        if (binding.isGlobal()) {
+            // The same index as binding.slot, but this makes room for it in the globals.
+            int index = this.global(this.globals.indexOf(name.symbol()));
+            this.emitShortOp(assign ? OpCode.OP_SET_GLOBAL : OpCode.OP_GET_GLOBAL, index);
+            return;
+        }
+
+        int arg = this.resolveLocal(name.lexeme());
+        if (arg != -1) {
+            this.emitBytes(assign ? OpCode.OP_SET_LOCAL : OpCode.OP_GET_LOCAL, arg);
+            return;
+        }
+
+        arg = this.resolveUpvalue(name.lexeme());
+        this.emitBytes(assign ? OpCode.OP_SET_UPVALUE : OpCode.OP_GET_UPVALUE, arg);
+    }
+
+    public void loadVariable(String name) {
+        int arg = this.resolveLocal(name);
+        if (arg != -1) {
+            this.emitBytes(OpCode.OP_GET_LOCAL, arg);
+            return;
+        }
+
+        arg = this.resolveUpvalue(name);
+        if (arg != -1) {
+            this.emitBytes(OpCode.OP_GET_UPVALUE, arg);
+            return;
+        }
+
+        this.emitShortOp(OpCode.OP_GET_GLOBAL, this.global(this.globals.indexOf(name)));
+    }
+
+    public void defineVariable(Token name) {
+        if (this.scopeDepth > 0) {
+            this.addLocal(name.lexeme());
+            return;
+        }
+
+        this.emitShortOp(OpCode.OP_DEFINE_GLOBAL, this.global(this.globals.indexOf(name.symbol())));
+    }
+
+    // Global operands are 16 bits, like constants.
+    public int global(int index) {
+        if (index > UINT16_MAX) {
+            this.error("Too many global variables.");
+            return 0;
+        }
+
+        return index;
+    }
+
+    public void addLocal(String name) {
+        if (this.localCount == UINT8_COUNT) {
+            this.error("Too many local variables in function.");
+            return;
+        }
+
+        this.locals[this.localCount++] = new Local(name, this.scopeDepth);
+    }
+
+    public int resolveLocal(String name) {
+        for (int i = this.localCount - 1; i >= 0; --i) {
+            if (this.locals[i].name.equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public int resolveUpvalue(String name) {
+        if (this.enclosing == null) {
+            return -1;
+        }
+
+        int local = this.enclosing.resolveLocal(name);
+        if (local != -1) {
+            this.enclosing.locals[local].isCaptured = true;
+            return this.addUpvalue(local, true);
+        }
+
+        int upvalue = this.enclosing.resolveUpvalue(name);
+        if (upvalue != -1) {
+            return this.addUpvalue(upvalue, false);
+        }
+
+        return -1;
+    }
+
+    public int addUpvalue(int index, boolean isLocal) {
+        int upvalueCount = this.function.upvalueCount;
+
+        for (int i = 0; i < upvalueCount; ++i) {
+            Upvalue upvalue = this.upvalues[i];
+            if (upvalue.index() == index && upvalue.isLocal() == isLocal) {
+                return i;
+            }
+        }
+
+        if (upvalueCount == UINT8_COUNT) {
+            this.error("Too many closure variables in function.");
+            return 0;
+        }
+
+        this.upvalues[upvalueCount] = new Upvalue(index, isLocal);
+        return this.function.upvalueCount++;
+    }
+
+    public void beginScope() {
+        ++this.scopeDepth;
+    }
+
+    public void endScope() {
+        --this.scopeDepth;
+
+        while (this.localCount > 0 && this.locals[this.localCount - 1].depth > this.scopeDepth) {
+            if (this.locals[this.localCount - 1].isCaptured) {
+                this.emitByte(OpCode.OP_CLOSE_UPVALUE);
+            } else {
+                this.emitByte(OpCode.OP_POP);
+            }
+            --this.localCount;
+        }
+    }
+
+    public Chunk currentChunk() {
+        return this.function.chunk;
+    }
+
+    public int makeConstant(Object value) {
+        int constant = this.currentChunk().addConstant(value);
+        if (constant > UINT16_MAX) {
+            this.error("Too many constants in one chunk.");
+            return 0;
+        }
+
+        return constant;
+    }
+
+    public void emitByte(int b) {
+        this.currentChunk().write(b, this.line);
+    }
+
+    public void emitBytes(int b1, int b2) {
+        this.emitByte(b1);
+        this.emitByte(b2);
+    }
+
+    public void emitShortOp(int op, int operand) {
+        this.emitByte(op);
+        this.emitByte((operand >> 8) & 0xff);
+        this.emitByte(operand & 0xff);
+    }
+
+    public void emitLoop(int loopStart) {
+        this.emitByte(OpCode.OP_LOOP);
+
+        int offset = this.currentChunk().count - loopStart + 2;
+        if (offset > UINT16_MAX) {
+            this.error("Loop body too large.");
+        }
+
+        this.emitByte((offset >> 8) & 0xff);
+        this.emitByte(offset & 0xff);
+    }
+
+    public int emitJump(int instruction) {
+        this.emitByte(instruction);
+        this.emitByte(0xff);
+        this.emitByte(0xff);
+        return this.currentChunk().count - 2;
+    }
+
+    public void patchJump(int offset) {
+        // -2 to adjust for the bytecode for the jump offset itself.
+        int jump = this.currentChunk().count - offset - 2;
+
+        if (jump > UINT16_MAX) {
+            this.error("Too much code to jump over.");
+        }
+
+        this.currentChunk().code[offset] = (byte) ((jump >> 8) & 0xff);
+        this.currentChunk().code[offset + 1] = (byte) (jump & 0xff);
+    }
+
+    public void emitReturn() {
+        if (this.type == FunctionType.INITIALIZER) {
+            this.emitBytes(OpCode.OP_GET_LOCAL, 0);
+        } else {
+            this.emitByte(OpCode.OP_NIL);
+        }
+
+        this.emitByte(OpCode.OP_RETURN);
+    }
+
+    public void error(String message) {
+        this.reporter.error(this.line, message);
+
+        Compiler compiler = this;
+        while (compiler != null) {
+            compiler.hadError = true;
+            compiler = compiler.enclosing;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.portfolio.ewhitaker.lox.vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.portfolio.ewhitaker.lox.Shape;
+import io.portfolio.ewhitaker.lox.Symbol;
+
+public interface Obj {
+    public interface NativeFn {
+        Object call(Object[] arguments);
+    }
+
+    public final class Function implements Obj {
+        public final Chunk chunk = new Chunk();
+        public final String name;
+        public int arity = 0;
+        public int upvalueCount = 0;
+
+        public Function(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            if (this.name == null) {
+                return "<script>";
+            }
+            return "<fn " + this.name + ">";
+        }
+    }
+
+    public final class Native implements Obj {
+        public final int arity;
+        public final NativeFn function;
+
+        public Native(int arity, NativeFn function) {
+            this.arity = arity;
+            this.function = function;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    }
+
+    public final class Closure implements Obj {
+        public final Function function;
+        public final Upvalue[] upvalues;
+
+        public Closure(Function function) {
+            this.function = function;
+            this.upvalues = new Upvalue[function.upvalueCount];
+        }
+
+        @Override
+        public String toString() {
+            return this.function.toString();
+        }
+    }
+
+    public final class Upvalue implements Obj {
+        public int location;
+        public Object closed = null;
+        public boolean isClosed = false;
+        public Upvalue next = null;
+
+        public Upvalue(int location) {
+            this.location = location;
+        }
+
+        @Override
+        public String toString() {
+            return "upvalue";
+        }
+    }
+
+    // Fields are laid out by shapes, as the tree walkers' are, and names are the engine's symbols.
+    public final class Class implements Obj {
+        public final String name;
+        public final Map<Symbol, Closure> methods = new HashMap<>();
+        public Closure initializer = null;
+        public final Shape shape = new Shape();
+        public int instanceSize = 0;
+
+        public Class(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    public final class Instance implements Obj {
+        public final Class klass;
+        public Shape shape;
+        public Object[] values;
+
+        public Instance(Class klass) {
+            this.klass = klass;
+            this.shape = klass.shape;
+            this.values = new Object[klass.instanceSize];
+        }
+
+        public void put(Shape shape, int index, Object value) {
+            if (shape != this.shape) {
+                this.shape = shape;
+                int size = shape.size();
+                if (size > this.values.length) {
+                    this.values = Arrays.copyOf(this.values, size);
+                }
+
+                // Later instances of the class start out with room for every field this one has needed.
+                if (size > this.klass.instanceSize) {
+                    this.klass.instanceSize = size;
+                }
+            }
+            this.values[index] = value;
+        }
+
+        @Override
+        public String toString() {
+            return this.klass.name + " instance";
+        }
+    }
+
+    public final class BoundMethod implements Obj {
+        public final Object receiver;
+        public final Closure method;
+
+        public BoundMethod(Object receiver, Closure method) {
+            this.receiver = receiver;
+            this.method = method;
+        }
+
+        @Override
+        public String toString() {
+            return this.method.toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.portfolio.ewhitaker.lox.vm;
+
+public interface OpCode {
+    byte OP_CONSTANT = 0;
+    byte OP_NIL = 1;
+    byte OP_TRUE = 2;
+    byte OP_FALSE = 3;
+    byte OP_POP = 4;
+    byte OP_GET_LOCAL = 5;
+    byte OP_SET_LOCAL = 6;
+    byte OP_GET_GLOBAL = 7;
+    byte OP_DEFINE_GLOBAL = 8;
+    byte OP_SET_GLOBAL = 9;
+    byte OP_GET_UPVALUE = 10;
+    byte OP_SET_UPVALUE = 11;
+    byte OP_GET_PROPERTY = 12;
+    byte OP_SET_PROPERTY = 13;
+    byte OP_GET_SUPER = 14;
+    byte OP_EQUAL = 15;
+    byte OP_GREATER = 16;
+    byte OP_GREATER_EQUAL = 17;
+    byte OP_LESS = 18;
+    byte OP_LESS_EQUAL = 19;
+    byte OP_ADD = 20;
+    byte OP_SUBTRACT = 21;
+    byte OP_MULTIPLY = 22;
+    byte OP_DIVIDE = 23;
+    byte OP_NOT = 24;
+    byte OP_NEGATE = 25;
+    byte OP_PRINT = 26;
+    byte OP_JUMP = 27;
+    byte OP_JUMP_IF_FALSE = 28;
+    byte OP_LOOP = 29;
+    byte OP_CALL = 30;
+    byte OP_INVOKE = 31;
+    byte OP_SUPER_INVOKE = 32;
+    byte OP_CLOSURE = 33;
+    byte OP_CLOSE_UPVALUE = 34;
+    byte OP_RETURN = 35;
+    byte OP_CLASS = 36;
+    byte OP_INHERIT = 37;
+    byte OP_METHOD = 38;
+}
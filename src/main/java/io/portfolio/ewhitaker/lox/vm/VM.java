@@ -0,0 +1,613 @@
+package io.portfolio.ewhitaker.lox.vm;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.portfolio.ewhitaker.lox.Evaluator;
+import io.portfolio.ewhitaker.lox.Globals;
+import io.portfolio.ewhitaker.lox.LoxChannel;
+import io.portfolio.ewhitaker.lox.LoxContext;
+import io.portfolio.ewhitaker.lox.LoxTask;
+import io.portfolio.ewhitaker.lox.Natives;
+import io.portfolio.ewhitaker.lox.Rope;
+import io.portfolio.ewhitaker.lox.RuntimeError;
+import io.portfolio.ewhitaker.lox.Shape;
+import io.portfolio.ewhitaker.lox.Stmt;
+import io.portfolio.ewhitaker.lox.Symbol;
+
+public class VM {
+    public static final int FRAMES_MAX = 1024;
+    public static final int STACK_MAX = FRAMES_MAX * Compiler.UINT8_COUNT;
+
+    public enum InterpretResult {
+        INTERPRET_OK,
+        INTERPRET_COMPILE_ERROR,
+        INTERPRET_RUNTIME_ERROR
+    }
+
+    public final LoxContext context;
+    public final Globals globals;
+    public final CallFrame[] frames = new CallFrame[FRAMES_MAX];
+    public int frameCount = 0;
+    public final Object[] stack = new Object[STACK_MAX];
+    public int stackTop = 0;
+    public Obj.Upvalue openUpvalues = null;
+
+    public VM(LoxContext context) {
+        this.context = context;
+        this.globals = new Globals(context.engine.symbols);
+        for (int i = 0; i < FRAMES_MAX; ++i) {
+            this.frames[i] = new CallFrame();
+        }
+
+        this.defineNatives();
+    }
+
+    // The same natives as Natives, except that the VM has no tasks: its open upvalues live on its own stack, which
+    // another thread's VM can't reach. So spawn fails on every call, and join can never be given a task. Channels work
+    // as they do elsewhere, within the one thread.
+    public void defineNatives() {
+        this.defineNative("clock", 0, arguments -> System.currentTimeMillis() / 1000.0);
+
+        this.defineNative("spawn", 1, arguments -> {
+            throw new RuntimeError(null, "spawn() is not supported by --vm.");
+        });
+        this.defineNative("join", 1, arguments -> Natives.task(arguments[0]).join());
+
+        this.defineNative("channel", 1, arguments -> {
+            if (!(arguments[0] instanceof Double capacity) || capacity < 1 || capacity != Math.floor(capacity)) {
+                throw new RuntimeError(null, "Channel capacity must be a positive integer.");
+            }
+            return new LoxChannel((int) Math.min(capacity, Integer.MAX_VALUE));
+        });
+        this.defineNative("send", 2, arguments -> {
+            Natives.channel(arguments[0]).send(arguments[1]);
+            return null;
+        });
+        this.defineNative("receive", 1, arguments -> Natives.channel(arguments[0]).receive());
+        this.defineNative("close", 1, arguments -> {
+            Natives.channel(arguments[0]).close();
+            return null;
+        });
+    }
+
+    public void defineNative(String name, int arity, Obj.NativeFn function) {
+        this.globals.define(name, new Obj.Native(arity, function));
+    }
+
+    public InterpretResult interpret(List<Stmt> statements) {
+        Obj.Function function = Compiler.compile(this.globals, this.context.reporter, statements);
+        if (function == null) {
+            return InterpretResult.INTERPRET_COMPILE_ERROR;
+        }
+
+        return this.interpret(function);
+    }
+
+    // Runs a compiled script, which may have been compiled against another VM's globals, as long as these globals
+    // have room for every index it uses.
+    public InterpretResult interpret(Obj.Function function) {
+        Obj.Closure closure = new Obj.Closure(function);
+        this.push(closure);
+        this.call(closure, 0);
+
+        return this.run();
+    }
+
+    public void resetStack() {
+        Arrays.fill(this.stack, 0, this.stackTop, null);
+        this.stackTop = 0;
+        this.frameCount = 0;
+        this.openUpvalues = null;
+    }
+
+    public void push(Object value) {
+        this.stack[this.stackTop++] = value;
+    }
+
+    public Object pop() {
+        return this.stack[--this.stackTop];
+    }
+
+    public Object peek(int distance) {
+        return this.stack[this.stackTop - 1 - distance];
+    }
+
+    public InterpretResult runtimeError(String message) {
+        CallFrame frame = this.frames[this.frameCount - 1];
+        int line = frame.closure.function.chunk.lines[frame.ip - 1];
+        this.context.reporter.runtimeError(message, line);
+
+        this.resetStack();
+        return InterpretResult.INTERPRET_RUNTIME_ERROR;
+    }
+
+    public String call(Obj.Closure closure, int argCount) {
+        if (argCount != closure.function.arity) {
+            return "Expected " + closure.function.arity + "  arguments but got " + argCount + ".";
+        }
+
+        if (this.frameCount == FRAMES_MAX) {
+            return "Stack overflow.";
+        }
+
+        CallFrame frame = this.frames[this.frameCount++];
+        frame.closure = closure;
+        frame.ip = 0;
+        frame.slots = this.stackTop - argCount - 1;
+        return null;
+    }
+
+    public String callValue(Object callee, int argCount) {
+        if (callee instanceof Obj.Closure closure) {
+            return this.call(closure, argCount);
+        }
+
+        if (callee instanceof Obj.BoundMethod bound) {
+            this.stack[this.stackTop - argCount - 1] = bound.receiver;
+            return this.call(bound.method, argCount);
+        }
+
+        if (callee instanceof Obj.Class klass) {
+            this.stack[this.stackTop - argCount - 1] = new Obj.Instance(klass);
+            if (klass.initializer != null) {
+                return this.call(klass.initializer, argCount);
+            }
+
+            if (argCount != 0) {
+                return "Expected 0  arguments but got " + argCount + ".";
+            }
+            return null;
+        }
+
+        if (callee instanceof Obj.Native function) {
+            if (argCount != function.arity) {
+                return "Expected " + function.arity + "  arguments but got " + argCount + ".";
+            }
+
+            Object[] arguments = Arrays.copyOfRange(this.stack, this.stackTop - argCount, this.stackTop);
+            Object result;
+            try {
+                result = function.function.call(arguments);
+            } catch (RuntimeError error) {
+                return error.getMessage();
+            }
+            this.stackTop -= argCount + 1;
+            this.push(result);
+            return null;
+        }
+
+        return "Can only call functions and classes.";
+    }
+
+    public static Chunk.Cache[] caches(Chunk chunk) {
+        Chunk.Cache[] caches = chunk.caches;
+        if (caches == null) {
+            caches = new Chunk.Cache[chunk.count];
+            chunk.caches = caches;
+        }
+        return caches;
+    }
+
+    // What name is on instance, as the instruction at site in chunk last found it if the shape is the same. Null if
+    // it is neither a field nor a method.
+    public Chunk.Cache property(Chunk chunk, int site, Obj.Instance instance, Symbol name) {
+        Chunk.Cache[] caches = caches(chunk);
+        Chunk.Cache cache = caches[site];
+        if (cache != null && cache.key() == instance.shape) {
+            return cache;
+        }
+
+        int index = instance.shape.indexOf(name);
+        if (index >= 0) {
+            cache = new Chunk.Cache(instance.shape, index, instance.shape, null);
+        } else {
+            Obj.Closure method = instance.klass.methods.get(name);
+            if (method == null) {
+                return null;
+            }
+            cache = new Chunk.Cache(instance.shape, -1, null, method);
+        }
+        caches[site] = cache;
+        return cache;
+    }
+
+    public Chunk.Cache field(Chunk chunk, int site, Obj.Instance instance, Symbol name) {
+        Chunk.Cache[] caches = caches(chunk);
+        Chunk.Cache cache = caches[site];
+        if (cache != null && cache.key() == instance.shape) {
+            return cache;
+        }
+
+        int index = instance.shape.indexOf(name);
+        if (index >= 0) {
+            cache = new Chunk.Cache(instance.shape, index, instance.shape, null);
+        } else {
+            Shape next = instance.shape.with(name);
+            cache = new Chunk.Cache(instance.shape, next.size() - 1, next, null);
+        }
+        caches[site] = cache;
+        return cache;
+    }
+
+    public Obj.Closure superMethod(Chunk chunk, int site, Obj.Class superclass, Symbol name) {
+        Chunk.Cache[] caches = caches(chunk);
+        Chunk.Cache cache = caches[site];
+        if (cache != null && cache.key() == superclass) {
+            return cache.method();
+        }
+
+        Obj.Closure method = superclass.methods.get(name);
+        if (method != null) {
+            caches[site] = new Chunk.Cache(superclass, -1, null, method);
+        }
+        return method;
+    }
+
+    public String invoke(Chunk chunk, int site, Symbol name, int argCount) {
+        Object receiver = this.peek(argCount);
+        if (!(receiver instanceof Obj.Instance instance)) {
+            return "Only instances have properties.";
+        }
+
+        Chunk.Cache cache = this.property(chunk, site, instance, name);
+        if (cache == null) {
+            return "Undefined property '" + name.name + "'.";
+        }
+        if (cache.method() == null) {
+            Object value = instance.values[cache.index()];
+            this.stack[this.stackTop - argCount - 1] = value;
+            return this.callValue(value, argCount);
+        }
+
+        return this.call(cache.method(), argCount);
+    }
+
+    public Obj.Upvalue captureUpvalue(int location) {
+        Obj.Upvalue prevUpvalue = null;
+        Obj.Upvalue upvalue = this.openUpvalues;
+        while (upvalue != null && upvalue.location > location) {
+            prevUpvalue = upvalue;
+            upvalue = upvalue.next;
+        }
+
+        if (upvalue != null && upvalue.location == location) {
+            return upvalue;
+        }
+
+        Obj.Upvalue createdUpvalue = new Obj.Upvalue(location);
+        createdUpvalue.next = upvalue;
+
+        if (prevUpvalue == null) {
+            this.openUpvalues = createdUpvalue;
+        } else {
+            prevUpvalue.next = createdUpvalue;
+        }
+
+        return createdUpvalue;
+    }
+
+    public void closeUpvalues(int last) {
+        while (this.openUpvalues != null && this.openUpvalues.location >= last) {
+            Obj.Upvalue upvalue = this.openUpvalues;
+            upvalue.closed = this.stack[upvalue.location];
+            upvalue.isClosed = true;
+            this.openUpvalues = upvalue.next;
+        }
+    }
+
+    public void defineMethod(Symbol name) {
+        Obj.Closure method = (Obj.Closure) this.peek(0);
+        Obj.Class klass = (Obj.Class) this.peek(1);
+        klass.methods.put(name, method);
+        if (name == Symbol.INIT) {
+            klass.initializer = method;
+        }
+        this.pop();
+    }
+
+    public InterpretResult run() {
+        CallFrame frame = this.frames[this.frameCount - 1];
+        Chunk chunk = frame.closure.function.chunk;
+        byte[] code = chunk.code;
+        Object[] constants = chunk.constants;
+        Object[] stack = this.stack;
+        int ip = frame.ip;
+
+        for (;;) {
+            byte instruction = code[ip++];
+            switch (instruction) {
+                case OpCode.OP_CONSTANT -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    this.push(constants[index]);
+                }
+                case OpCode.OP_NIL -> this.push(null);
+                case OpCode.OP_TRUE -> this.push(true);
+                case OpCode.OP_FALSE -> this.push(false);
+                case OpCode.OP_POP -> this.pop();
+                case OpCode.OP_GET_LOCAL -> {
+                    int slot = code[ip++] & 0xff;
+                    this.push(stack[frame.slots + slot]);
+                }
+                case OpCode.OP_SET_LOCAL -> {
+                    int slot = code[ip++] & 0xff;
+                    stack[frame.slots + slot] = this.peek(0);
+                }
+                case OpCode.OP_GET_GLOBAL -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    Object value = this.globals.values[index];
+                    if (value == Globals.UNDEFINED) {
+                        frame.ip = ip;
+                        return this.runtimeError("Undefined variable '" + this.globals.nameOf(index) + "'.");
+                    }
+                    this.push(value);
+                }
+                case OpCode.OP_DEFINE_GLOBAL -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    this.globals.values[index] = this.pop();
+                }
+                case OpCode.OP_SET_GLOBAL -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (this.globals.values[index] == Globals.UNDEFINED) {
+                        frame.ip = ip;
+                        return this.runtimeError("Undefined variable '" + this.globals.nameOf(index) + "'.");
+                    }
+                    this.globals.values[index] = this.peek(0);
+                }
+                case OpCode.OP_GET_UPVALUE -> {
+                    Obj.Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+                    this.push(upvalue.isClosed ? upvalue.closed : stack[upvalue.location]);
+                }
+                case OpCode.OP_SET_UPVALUE -> {
+                    Obj.Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+                    if (upvalue.isClosed) {
+                        upvalue.closed = this.peek(0);
+                    } else {
+                        stack[upvalue.location] = this.peek(0);
+                    }
+                }
+                case OpCode.OP_GET_PROPERTY -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (!(this.peek(0) instanceof Obj.Instance instance)) {
+                        frame.ip = ip;
+                        return this.runtimeError("Only instances have properties.");
+                    }
+
+                    Symbol name = (Symbol) constants[index];
+                    Chunk.Cache cache = this.property(chunk, ip - 3, instance, name);
+                    if (cache == null) {
+                        frame.ip = ip;
+                        return this.runtimeError("Undefined property '" + name.name + "'.");
+                    }
+
+                    this.pop(); // Instance.
+                    if (cache.method() == null) {
+                        this.push(instance.values[cache.index()]);
+                    } else {
+                        this.push(new Obj.BoundMethod(instance, cache.method()));
+                    }
+                }
+                case OpCode.OP_SET_PROPERTY -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (!(this.peek(1) instanceof Obj.Instance instance)) {
+                        frame.ip = ip;
+                        return this.runtimeError("Only instances have fields.");
+                    }
+
+                    Chunk.Cache cache = this.field(chunk, ip - 3, instance, (Symbol) constants[index]);
+                    instance.put(cache.next(), cache.index(), this.peek(0));
+                    Object value = this.pop();
+                    this.pop();
+                    this.push(value);
+                }
+                case OpCode.OP_GET_SUPER -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    Symbol name = (Symbol) constants[index];
+                    Obj.Class superclass = (Obj.Class) this.pop();
+                    Obj.Closure method = this.superMethod(chunk, ip - 3, superclass, name);
+                    if (method == null) {
+                        frame.ip = ip;
+                        return this.runtimeError("Undefined property '" + name.name + "'.");
+                    }
+
+                    Obj.BoundMethod bound = new Obj.BoundMethod(this.pop(), method);
+                    this.push(bound);
+                }
+                case OpCode.OP_EQUAL -> {
+                    Object b = this.pop();
+                    Object a = this.pop();
+                    this.push(this.valuesEqual(a, b));
+                }
+                case OpCode.OP_GREATER, OpCode.OP_GREATER_EQUAL, OpCode.OP_LESS, OpCode.OP_LESS_EQUAL,
+                        OpCode.OP_SUBTRACT, OpCode.OP_MULTIPLY, OpCode.OP_DIVIDE -> {
+                    if (!(this.peek(0) instanceof Double b) || !(this.peek(1) instanceof Double a)) {
+                        frame.ip = ip;
+                        return this.runtimeError("Operands must be a numbers.");
+                    }
+
+                    this.pop();
+                    this.pop();
+                    this.push(switch (instruction) {
+                        case OpCode.OP_GREATER -> (Object) (a > b);
+                        case OpCode.OP_GREATER_EQUAL -> a >= b;
+                        case OpCode.OP_LESS -> a < b;
+                        case OpCode.OP_LESS_EQUAL -> a <= b;
+                        case OpCode.OP_SUBTRACT -> a - b;
+                        case OpCode.OP_MULTIPLY -> a * b;
+                        default -> a / b;
+                    });
+                }
+                case OpCode.OP_ADD -> {
+                    Object b = this.peek(0);
+                    Object a = this.peek(1);
+                    if (a instanceof Double x && b instanceof Double y) {
+                        this.pop();
+                        this.pop();
+                        this.push(x + y);
+                    } else if (Rope.isString(a) && Rope.isString(b)) {
+                        this.pop();
+                        this.pop();
+                        this.push(Rope.concat(a, b));
+                    } else {
+                        frame.ip = ip;
+                        return this.runtimeError("Operands must be two numbers or two strings.");
+                    }
+                }
+                case OpCode.OP_NOT -> this.push(this.isFalsey(this.pop()));
+                case OpCode.OP_NEGATE -> {
+                    if (!(this.peek(0) instanceof Double value)) {
+                        frame.ip = ip;
+                        return this.runtimeError("Operand must be a number.");
+                    }
+                    this.pop();
+                    this.push(-value);
+                }
+                case OpCode.OP_PRINT -> this.context.out.println(this.stringify(this.pop()));
+                case OpCode.OP_JUMP -> {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2 + offset;
+                }
+                case OpCode.OP_JUMP_IF_FALSE -> {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (this.isFalsey(this.peek(0))) {
+                        ip += offset;
+                    }
+                }
+                case OpCode.OP_LOOP -> {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2 - offset;
+
+                    // As LoxTask.checkCancelled, after leaving the stack empty for whatever this VM runs next.
+                    if (Thread.currentThread().isInterrupted()) {
+                        this.resetStack();
+                        throw new LoxTask.Cancelled();
+                    }
+                }
+                case OpCode.OP_CALL, OpCode.OP_INVOKE, OpCode.OP_SUPER_INVOKE -> {
+                    String error;
+                    if (instruction == OpCode.OP_CALL) {
+                        int argCount = code[ip++] & 0xff;
+                        frame.ip = ip;
+                        error = this.callValue(this.peek(argCount), argCount);
+                    } else {
+                        Symbol method = (Symbol) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                        int argCount = code[ip + 2] & 0xff;
+                        int site = ip - 1;
+                        ip += 3;
+                        frame.ip = ip;
+                        if (instruction == OpCode.OP_INVOKE) {
+                            error = this.invoke(chunk, site, method, argCount);
+                        } else {
+                            Obj.Class superclass = (Obj.Class) this.pop();
+                            Obj.Closure closure = this.superMethod(chunk, site, superclass, method);
+                            error = closure == null
+                                    ? "Undefined property '" + method.name + "'."
+                                    : this.call(closure, argCount);
+                        }
+                    }
+
+                    if (error != null) {
+                        return this.runtimeError(error);
+                    }
+
+                    frame = this.frames[this.frameCount - 1];
+                    chunk = frame.closure.function.chunk;
+                    code = chunk.code;
+                    constants = chunk.constants;
+                    ip = frame.ip;
+                }
+                case OpCode.OP_CLOSURE -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    Obj.Closure closure = new Obj.Closure((Obj.Function) constants[index]);
+                    this.push(closure);
+                    for (int i = 0; i < closure.upvalues.length; ++i) {
+                        boolean isLocal = code[ip++] == 1;
+                        int slot = code[ip++] & 0xff;
+                        if (isLocal) {
+                            closure.upvalues[i] = this.captureUpvalue(frame.slots + slot);
+                        } else {
+                            closure.upvalues[i] = frame.closure.upvalues[slot];
+                        }
+                    }
+                }
+                case OpCode.OP_CLOSE_UPVALUE -> {
+                    this.closeUpvalues(this.stackTop - 1);
+                    this.pop();
+                }
+                case OpCode.OP_RETURN -> {
+                    Object result = this.pop();
+                    this.closeUpvalues(frame.slots);
+                    --this.frameCount;
+                    if (this.frameCount == 0) {
+                        this.pop();
+                        return InterpretResult.INTERPRET_OK;
+                    }
+
+                    this.stackTop = frame.slots;
+                    this.push(result);
+
+                    frame = this.frames[this.frameCount - 1];
+                    chunk = frame.closure.function.chunk;
+                    code = chunk.code;
+                    constants = chunk.constants;
+                    ip = frame.ip;
+                }
+                case OpCode.OP_CLASS -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    this.push(new Obj.Class((String) constants[index]));
+                }
+                case OpCode.OP_INHERIT -> {
+                    if (!(this.peek(1) instanceof Obj.Class superclass)) {
+                        frame.ip = ip;
+                        return this.runtimeError("Superclass must be a class.");
+                    }
+
+                    Obj.Class subclass = (Obj.Class) this.peek(0);
+                    subclass.methods.putAll(superclass.methods);
+                    subclass.initializer = superclass.initializer;
+                    this.pop(); // Subclass.
+                }
+                case OpCode.OP_METHOD -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    this.defineMethod((Symbol) constants[index]);
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + instruction + ".");
+            }
+        }
+    }
+
+    public boolean isFalsey(Object value) {
+        return !Evaluator.isTruthy(value);
+    }
+
+    public boolean valuesEqual(Object a, Object b) {
+        return Evaluator.isEqual(a, b);
+    }
+
+    public String stringify(Object value) {
+        if (value == null) {
+            return "nil";
+        }
+
+        if (value instanceof Double) {
+            String text = value.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return value.toString();
+    }
+}
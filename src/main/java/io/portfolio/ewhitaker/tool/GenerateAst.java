@@ -16,24 +16,24 @@ public class GenerateAst {
         String outputDir = args[0];
         defineAst(
                 outputDir, "Expr", Arrays.asList(
-                        "Assign   : Token name, Expr value",
+                        "Assign   : Token name, Expr value, Binding binding",
                         "Binary   : Expr left, Token operator, Expr right",
                         "Call     : Expr callee, Token paren, List<Expr> arguments",
-                        "Get      : Expr object, Token name",
+                        "Get      : Expr object, Token name, InlineCache cache",
                         "Grouping : Expr expression",
                         "Literal  : Object value",
                         "Logical  : Expr left, Token operator, Expr right",
-                        "Set      : Expr object, Token name, Expr value",
-                        "Super    : Token keyword, Token method",
-                        "This     : Token keyword",
+                        "Set      : Expr object, Token name, Expr value, InlineCache cache",
+                        "Super    : Token keyword, Token method, Binding binding, InlineCache cache",
+                        "This     : Token keyword, Binding binding",
                         "Unary    : Token operator, Expr right",
-                        "Variable : Token name"
+                        "Variable : Token name, Binding binding"
                 )
         );
 
         defineAst(
                 outputDir, "Stmt", Arrays.asList(
-                        "Block      : List<Stmt> statements",
+                        "Block      : List<Stmt> statements, Scope scope",
                         "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
                         "Expression : Expr expression",
                         "Function   : Token name, List<Token> params, List<Stmt> body",
@@ -0,0 +1,153 @@
+package io.portfolio.ewhitaker.tool;
+
+import java.util.List;
+import java.util.Random;
+
+import io.portfolio.ewhitaker.Main;
+import io.portfolio.ewhitaker.lox.Lexer;
+import io.portfolio.ewhitaker.lox.Parser;
+import io.portfolio.ewhitaker.lox.Reporter;
+import io.portfolio.ewhitaker.lox.Source;
+import io.portfolio.ewhitaker.lox.Stmt;
+import io.portfolio.ewhitaker.lox.SymbolTable;
+import io.portfolio.ewhitaker.lox.Tokens;
+
+// Measures lexer and parser throughput on a generated program. The program only has to parse, so it is built from
+// random declarations, control flow and deeply mixed expressions rather than anything meaningful to run.
+public class ParserBenchmark {
+    public static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        if (args.length > 2) {
+            System.err.println("Usage: parser_benchmark [declarations] [iterations]");
+            System.exit(Main.EXIT_USAGE);
+        }
+        int declarations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        String program = generate(new Random(42), declarations);
+        Source source = new Source(program);
+        System.out.println("Generated " + program.length() / 1024 + " KB, " + declarations + " declarations.");
+
+        Reporter reporter = new Reporter(System.err);
+        SymbolTable symbols = new SymbolTable();
+        long lexing = Long.MAX_VALUE;
+        long parsing = Long.MAX_VALUE;
+        int tokens = 0;
+        int statements = 0;
+        for (int i = 0; i < WARMUP + iterations; ++i) {
+            long start = System.nanoTime();
+            Tokens scanned = new Lexer(source, symbols, reporter).scanTokens();
+            long lexed = System.nanoTime();
+            List<Stmt> parsed = new Parser(scanned, reporter).parse();
+            long end = System.nanoTime();
+
+            if (reporter.hadError) {
+                System.err.println("Generated program does not parse.");
+                System.exit(Main.EXIT_SOFTWARE);
+            }
+
+            if (i >= WARMUP) {
+                lexing = Math.min(lexing, lexed - start);
+                parsing = Math.min(parsing, end - lexed);
+            }
+            tokens = scanned.count;
+            statements = parsed.size();
+        }
+
+        System.out.println(tokens + " tokens, " + statements + " top-level statements, best of " + iterations + ":");
+        report("lex", lexing, program.length(), tokens);
+        report("parse", parsing, program.length(), tokens);
+    }
+
+    public static void report(String phase, long nanos, int bytes, int tokens) {
+        System.out.printf(
+                "%-6s %8.2f ms  %7.1f MB/s  %6.2f M tokens/s%n",
+                phase, nanos / 1e6, bytes * 1e3 / nanos, tokens * 1e3 / nanos
+        );
+    }
+
+    public static String generate(Random random, int declarations) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < declarations; ++i) {
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    builder.append("var v").append(i).append(" = ");
+                    expression(random, builder, 4);
+                    builder.append(";\n");
+                }
+                case 1 -> {
+                    builder.append("fun f").append(i).append("(a, b) {\n  if (");
+                    expression(random, builder, 3);
+                    builder.append(") return a; else {\n    b = ");
+                    expression(random, builder, 3);
+                    builder.append(";\n  }\n  return b;\n}\n");
+                }
+                case 2 -> {
+                    builder.append("class C").append(i).append(" < Base {\n  init(x) {\n    this.x = ");
+                    expression(random, builder, 3);
+                    builder.append(";\n  }\n  get() {\n    return super.get() + this.x;\n  }\n}\n");
+                }
+                case 3 -> {
+                    builder.append("for (var i = 0; i < 10; i = i + 1) {\n  print ");
+                    expression(random, builder, 3);
+                    builder.append(";\n}\n");
+                }
+                case 4 -> {
+                    builder.append("while (");
+                    expression(random, builder, 2);
+                    builder.append(") a.b.c = ");
+                    expression(random, builder, 3);
+                    builder.append(";\n");
+                }
+                default -> {
+                    expression(random, builder, 5);
+                    builder.append(";\n");
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    public static final String[] OPERATORS = {
+            " or ", " and ", " == ", " != ", " < ", " <= ", " > ", " >= ", " + ", " - ", " * ", " / "
+    };
+
+    public static void expression(Random random, StringBuilder builder, int depth) {
+        if (depth == 0) {
+            switch (random.nextInt(6)) {
+                case 0 -> builder.append(random.nextInt(1000));
+                case 1 -> builder.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+                case 2 -> builder.append("\"s").append(random.nextInt(100)).append('"');
+                case 3 -> builder.append(random.nextBoolean() ? "true" : "nil");
+                case 4 -> builder.append("name").append(random.nextInt(50));
+                default -> builder.append("obj.field").append(random.nextInt(10));
+            }
+            return;
+        }
+
+        switch (random.nextInt(5)) {
+            case 0 -> {
+                builder.append('(');
+                expression(random, builder, depth - 1);
+                builder.append(')');
+            }
+            case 1 -> {
+                builder.append(random.nextBoolean() ? "-" : "!");
+                expression(random, builder, depth - 1);
+            }
+            case 2 -> {
+                builder.append("call").append(random.nextInt(10)).append('(');
+                expression(random, builder, depth - 1);
+                builder.append(", ");
+                expression(random, builder, depth - 1);
+                builder.append(')');
+            }
+            default -> {
+                expression(random, builder, depth - 1);
+                builder.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+                expression(random, builder, depth - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.portfolio.ewhitaker.Main;
+
+public class BatchTest {
+    @TempDir
+    public Path directory;
+
+    // Timings differ from run to run, so they are left out of what is compared.
+    public static String withoutTimings(String report) {
+        return report.replaceAll("compile [0-9.]+ ms, run [0-9.]+ ms", "compile ms, run ms")
+                .replaceAll("in [0-9.]+ s on .*", "in s");
+    }
+
+    public static String header(Path script, int status) {
+        return "=== " + script + ": exit " + status + ", compile ms, run ms\n";
+    }
+
+    public String run(Path manifest, int expectedStatus) throws IOException {
+        Batch batch = new Batch(new LoxEngine(LoxEngine.Backend.EVALUATOR, false, null), 4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true, StandardCharsets.UTF_8);
+        try {
+            assertEquals(expectedStatus, batch.run(Batch.scripts(manifest), stream));
+        } finally {
+            batch.pool.shutdown();
+        }
+        return withoutTimings(output.toString(StandardCharsets.UTF_8));
+    }
+
+    // Each script's output comes right after its own header, in the order the manifest lists them, whichever finishes
+    // first, and the batch exits with the worst status of any.
+    @Test
+    public void scriptsAreReportedTogetherAndInOrder() throws IOException {
+        Files.writeString(this.directory.resolve("pass.lox"), "print \"pass 1\";\nprint \"pass 2\";\n");
+        Files.writeString(this.directory.resolve("runtime.lox"), "print \"runtime 1\";\nprint -\"text\";\n");
+        Files.writeString(this.directory.resolve("compile.lox"), "print \"compile 1\";\nprint;\n");
+        Path manifest = this.directory.resolve("manifest");
+        Files.writeString(manifest, "# Four scripts.\npass.lox\nruntime.lox\n\ncompile.lox\nmissing.lox\n");
+
+        Path root = this.directory.toAbsolutePath();
+        assertEquals(
+                header(root.resolve("pass.lox"), Main.EXIT_OK)
+                        + "pass 1\npass 2\n"
+                        + header(root.resolve("runtime.lox"), Main.EXIT_SOFTWARE)
+                        + "runtime 1\nOperand must be a number.\n[line 2]\n"
+                        + header(root.resolve("compile.lox"), Main.EXIT_DATA_ERROR)
+                        + "[line 2] Error at ';': Expect expression.\n"
+                        + header(root.resolve("missing.lox"), Main.EXIT_NO_INPUT)
+                        + "Can't read " + root.resolve("missing.lox") + " (NoSuchFileException).\n"
+                        + "4 scripts, 3 failed, in s\n",
+                this.run(manifest, Main.EXIT_NO_INPUT)
+        );
+    }
+
+    // A directory runs every .lox file under it, sorted by path.
+    @Test
+    public void directoriesRunTheirScriptsSorted() throws IOException {
+        Path nested = Files.createDirectories(this.directory.resolve("nested"));
+        for (int i = 0; i < 20; ++i) {
+            Files.writeString(nested.resolve(String.format("%02d.lox", i)), "print " + i + ";\n");
+        }
+        Files.writeString(nested.resolve("notes.txt"), "print \"skipped\";\n");
+
+        List<Path> scripts = Batch.scripts(this.directory);
+        assertEquals(20, scripts.size());
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; ++i) {
+            expected.append(header(nested.resolve(String.format("%02d.lox", i)), Main.EXIT_OK)).append(i).append('\n');
+        }
+        expected.append("20 scripts, 0 failed, in s\n");
+        String report = this.run(this.directory, Main.EXIT_OK);
+        assertEquals(expected.toString(), report);
+        assertTrue(!report.contains("skipped"));
+    }
+}
@@ -0,0 +1,164 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import io.portfolio.ewhitaker.Main;
+
+public class DaemonTest {
+    @TempDir
+    public Path directory;
+
+    public record Response(String output, String errors, int status) {
+    }
+
+    // A daemon serving on a socket in the temporary directory, on a thread of its own until it is closed.
+    public final class Served implements AutoCloseable {
+        public final Daemon daemon;
+        public final Thread thread;
+
+        public Served(LoxEngine.Backend backend, int jobs) throws InterruptedException {
+            this.daemon = new Daemon(new LoxEngine(backend, false, null), DaemonTest.this.directory.resolve("d.sock"), jobs);
+            this.thread = new Thread(() -> {
+                try {
+                    this.daemon.serve();
+                } catch (IOException error) {
+                    throw new RuntimeException(error);
+                }
+            });
+            this.thread.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Daemon.listening(UnixDomainSocketAddress.of(this.daemon.socket))) {
+                assertTrue(System.nanoTime() < deadline, "The daemon never started listening.");
+                Thread.sleep(10);
+            }
+        }
+
+        public SocketChannel connect(byte kind, int length, byte[] bytes) throws IOException {
+            SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(this.daemon.socket));
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeByte(kind);
+            out.writeInt(length);
+            out.write(bytes);
+            out.flush();
+            return channel;
+        }
+
+        public Response request(byte kind, String request) throws IOException {
+            byte[] bytes = request.getBytes(StandardCharsets.UTF_8);
+            try (SocketChannel channel = this.connect(kind, bytes.length, bytes)) {
+                return response(channel);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            this.daemon.close();
+            this.thread.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(this.thread.isAlive());
+        }
+    }
+
+    public static Response response(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        for (;;) {
+            byte frame = in.readByte();
+            int length = in.readInt();
+            if (frame == Daemon.EXIT) {
+                return new Response(out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8), length);
+            }
+            (frame == Daemon.STDERR ? err : out).write(in.readNBytes(length));
+        }
+    }
+
+    @Test
+    public void requestsAnswerWithOutputAndStatus() throws Exception {
+        try (Served served = new Served(LoxEngine.Backend.EVALUATOR, 2)) {
+            assertEquals(
+                    PosixFilePermissions.fromString("rw-------"),
+                    Files.getPosixFilePermissions(served.daemon.socket)
+            );
+
+            assertEquals(new Response("3\n", "", Main.EXIT_OK), served.request(Daemon.SOURCE, "print 1 + 2;"));
+            assertEquals(
+                    new Response("1\n", "Undefined variable 'nope'.\n[line 1]\n", Main.EXIT_SOFTWARE),
+                    served.request(Daemon.SOURCE, "print 1; print nope;")
+            );
+
+            Path script = this.directory.resolve("script.lox");
+            Files.writeString(script, "var a = \"from \"; print a + \"a file\";\n");
+            assertEquals(
+                    new Response("from a file\n", "", Main.EXIT_OK),
+                    served.request(Daemon.PATH, script.toString())
+            );
+
+            Path missing = this.directory.resolve("missing.lox");
+            assertEquals(
+                    new Response("", "Can't read " + missing + " (NoSuchFileException).\n", Main.EXIT_NO_INPUT),
+                    served.request(Daemon.PATH, missing.toString())
+            );
+        }
+    }
+
+    // The request's length comes from the client, so one that is negative or too large is refused without allocating.
+    @Test
+    public void badLengthsAreRefused() throws Exception {
+        try (Served served = new Served(LoxEngine.Backend.EVALUATOR, 1)) {
+            for (int length : new int[] { -1, Daemon.MAX_REQUEST + 1, Integer.MAX_VALUE }) {
+                try (SocketChannel channel = served.connect(Daemon.SOURCE, length, new byte[0])) {
+                    Response response = response(channel);
+                    assertEquals(Main.EXIT_USAGE, response.status());
+                    assertTrue(response.errors().contains(Integer.toString(length)), response.errors());
+                }
+            }
+            assertEquals(new Response("ok\n", "", Main.EXIT_OK), served.request(Daemon.SOURCE, "print \"ok\";"));
+        }
+    }
+
+    // With one worker, a script whose client hung up must be stopped for the next request to be answered at all, and
+    // so must a task it left spinning.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void abandonedRequestsFreeTheirWorker(LoxEngine.Backend backend) throws Exception {
+        try (Served served = new Served(backend, 1)) {
+            String source = backend == LoxEngine.Backend.VM
+                    ? "while (true) {}"
+                    : "fun spin() { while (true) {} } spawn(spin); while (true) {}";
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            served.connect(Daemon.SOURCE, bytes.length, bytes).close();
+
+            CompletableFuture<Response> next = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return served.request(Daemon.SOURCE, "print \"next\";");
+                } catch (IOException error) {
+                    throw new RuntimeException(error);
+                }
+            });
+            assertEquals(new Response("next\n", "", Main.EXIT_OK), next.get(30, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import io.portfolio.ewhitaker.Main;
+
+// Runs every script under golden/ on every backend, with and without the optimizer, and compares what it prints to
+// standard output and standard error, followed by "exit:" and the status jlox would exit with, to the script's
+// .expected file. The backends must agree with each other exactly, errors included.
+public class GoldenTest {
+    public static Path directory() throws URISyntaxException {
+        return Path.of(GoldenTest.class.getResource("/golden").toURI());
+    }
+
+    public static List<Path> scripts() throws IOException, URISyntaxException {
+        try (Stream<Path> files = Files.list(directory())) {
+            return files.filter(file -> file.toString().endsWith(".lox")).sorted().toList();
+        }
+    }
+
+    // Both streams write straight through to one buffer, so it interleaves them as a terminal would.
+    public static String run(LoxEngine engine, Source source) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true, StandardCharsets.UTF_8);
+        LoxContext context = engine.createContext(stream, stream);
+        context.run(source);
+        stream.flush();
+        return output.toString(StandardCharsets.UTF_8) + "exit:" + status(context) + "\n";
+    }
+
+    public static int status(LoxContext context) {
+        if (context.reporter.hadError) {
+            return Main.EXIT_DATA_ERROR;
+        }
+        if (context.reporter.hadRuntimeError) {
+            return Main.EXIT_SOFTWARE;
+        }
+        return Main.EXIT_OK;
+    }
+
+    public static String expected(Path script) throws IOException {
+        String name = script.getFileName().toString();
+        Path expected = script.resolveSibling(name.substring(0, name.length() - ".lox".length()) + ".expected");
+        return Files.readString(expected, StandardCharsets.UTF_8);
+    }
+
+    @TestFactory
+    public List<DynamicTest> scriptsPrintWhatTheyExpect() throws IOException, URISyntaxException {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (LoxEngine.Backend backend : LoxEngine.Backend.values()) {
+            for (boolean optimize : new boolean[] { false, true }) {
+                LoxEngine engine = new LoxEngine(backend, optimize, null);
+                for (Path script : scripts()) {
+                    String name = backend + (optimize ? " optimized " : " ") + script.getFileName();
+                    tests.add(dynamicTest(name, () -> {
+                        assertEquals(expected(script), run(engine, Source.map(script)));
+                    }));
+                }
+            }
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,81 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class InlineCacheTest {
+    public final SymbolTable symbols = new SymbolTable();
+    public final Token name = new Lexer(new Source("field"), this.symbols, new Reporter(System.err)).scanTokens().token(0);
+
+    // An instance of a class of its own, with the field set, as each run of a script makes anew.
+    public LoxInstance instance() {
+        LoxInstance instance = new LoxInstance(new LoxClass("Class", null, Map.of()));
+        instance.set(this.name, 1.0);
+        return instance;
+    }
+
+    @Test
+    public void runsDoNotAddUp() {
+        InlineCache cache = new InlineCache();
+        for (int run = 0; run < 100; ++run) {
+            Object owner = new Object();
+            LoxInstance instance = this.instance();
+            assertEquals(1.0, cache.get(owner, instance, this.name));
+            assertNotNull(cache.lookup(instance.shape));
+            assertTrue(cache.entries.length <= InlineCache.CAPACITY);
+        }
+    }
+
+    @Test
+    public void megamorphicRunsStopCachingAlone() {
+        InlineCache cache = new InlineCache();
+        Object megamorphic = new Object();
+        Object other = new Object();
+        LoxInstance first = this.instance();
+        cache.get(other, first, this.name);
+
+        for (int i = 0; i <= InlineCache.POLYMORPHIC_LIMIT; ++i) {
+            cache.get(megamorphic, this.instance(), this.name);
+        }
+        LoxInstance late = this.instance();
+        assertEquals(1.0, cache.get(megamorphic, late, this.name));
+        assertNull(cache.lookup(late.shape));
+
+        assertNotNull(cache.lookup(first.shape));
+        LoxInstance second = this.instance();
+        cache.get(other, second, this.name);
+        assertNotNull(cache.lookup(second.shape));
+    }
+
+    // A polymorphic site in a script run many times by one engine's contexts keeps caching in every run.
+    @Test
+    public void programsRunManyTimes() {
+        LoxEngine engine = new LoxEngine(LoxEngine.Backend.EVALUATOR, false, null);
+        Program program = engine.compile(new Source("""
+                class A { init() { this.x = 1; } }
+                class B { init() { this.x = 2; } }
+                class C { init() { this.x = 3; } }
+                fun x(object) { return object.x; }
+                var sum = x(A()) + x(B()) + x(C());
+                """), new Reporter(System.err));
+        Stmt.Function function = (Stmt.Function) program.statements().get(3);
+        Expr.Get get = (Expr.Get) ((Stmt.Return) function.body().get(0)).value();
+
+        for (int run = 0; run < 20; ++run) {
+            LoxContext context = engine.createContext(System.out, System.err);
+            context.run(program);
+            int owned = 0;
+            for (InlineCache.Entry entry : get.cache().entries) {
+                assertNotNull(entry.key());
+                owned += entry.owner() == context.execution ? 1 : 0;
+            }
+            assertEquals(3, owned);
+        }
+    }
+}
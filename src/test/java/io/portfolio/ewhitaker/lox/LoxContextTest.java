@@ -0,0 +1,221 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class LoxContextTest {
+    // A context whose output and errors go to one buffer.
+    public static final class Captured {
+        public final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        public final LoxContext context;
+
+        public Captured(LoxEngine engine) {
+            PrintStream stream = new PrintStream(this.output, true, StandardCharsets.UTF_8);
+            this.context = engine.createContext(stream, stream);
+        }
+
+        public String run(String source) {
+            this.output.reset();
+            this.context.run(new Source(source));
+            return this.output.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void contextsDoNotShareGlobals(LoxEngine.Backend backend) {
+        LoxEngine engine = new LoxEngine(backend, false, null);
+        Captured first = new Captured(engine);
+        Captured second = new Captured(engine);
+
+        assertEquals("1\n", first.run("var shared = 1; clock = nil; print shared;"));
+        assertEquals("Undefined variable 'shared'.\n[line 1]\n", second.run("print shared;"));
+        assertEquals("true\n", second.run("print clock() > 0;"));
+        assertEquals("1\n", first.run("print shared;"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void contextsRunAtOnce(LoxEngine.Backend backend) throws Exception {
+        LoxEngine engine = new LoxEngine(backend, false, null);
+        Program program = engine.compile(new Source("""
+                class Counter { init() { this.n = 0; } add(k) { this.n = this.n + k; } }
+                var counter = Counter();
+                for (var i = 0; i < 20000; i = i + 1) counter.add(start);
+                print counter.n;
+                """), new Reporter(System.err));
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; ++i) {
+                int start = i;
+                results.add(threads.submit(() -> {
+                    Captured captured = new Captured(engine);
+                    captured.context.bind("start", start);
+                    captured.context.run(program);
+                    return captured.output.toString(StandardCharsets.UTF_8);
+                }));
+            }
+
+            for (int i = 0; i < results.size(); ++i) {
+                assertEquals(20000 * i + "\n", results.get(i).get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void bindingsBecomeGlobals(LoxEngine.Backend backend) {
+        Captured captured = new Captured(new LoxEngine(backend, false, null));
+        captured.context.bind("number", 3);
+        captured.context.bind("text", new StringBuilder("ab"));
+        captured.context.bind("flag", true);
+        captured.context.bind("nothing", null);
+
+        assertEquals("4\nabc\nfalse\nnil\n", captured.run("""
+                print number + 1;
+                print text + "c";
+                print !flag;
+                print nothing;
+                """));
+        assertThrows(IllegalArgumentException.class, () -> captured.context.bind("list", List.of()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void programsRunOnlyInTheirOwnEngine(LoxEngine.Backend backend) {
+        Program program = new LoxEngine(backend, false, null).compile(new Source("print 1;"), new Reporter(System.err));
+        LoxContext other = new Captured(new LoxEngine(backend, false, null)).context;
+        assertThrows(IllegalArgumentException.class, () -> other.run(program));
+    }
+
+    // Only global names take a slot, whatever else the script names.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void globalsAreNumberedDensely(LoxEngine.Backend backend) {
+        LoxEngine engine = new LoxEngine(backend, false, null);
+        Captured captured = new Captured(engine);
+        int natives = engine.symbols.globalCount;
+
+        StringBuilder source = new StringBuilder("var one = 1; class Two { init() { this.a = 1; this.b = 2; } }");
+        for (int i = 0; i < 1000; ++i) {
+            source.append(" { var local").append(i).append(" = Two().a; }");
+        }
+        assertEquals("", captured.run(source.toString()));
+        assertEquals(natives + 2, engine.symbols.globalCount);
+        assertTrue(captured.context.globals().values.length <= Math.max(16, 2 * engine.symbols.globalCount));
+    }
+
+    // A task that spins, one blocked on a channel and one that keeps spawning more all stop when the run does.
+    @ParameterizedTest
+    @EnumSource(value = LoxEngine.Backend.class, names = "VM", mode = EnumSource.Mode.EXCLUDE)
+    public void tasksStopWhenTheRunEnds(LoxEngine.Backend backend) {
+        Captured captured = new Captured(new LoxEngine(backend, false, null));
+        assertEquals("42\n", captured.run("""
+                fun spin() { while (true) {} }
+                var c = channel(1);
+                fun wait() { receive(c); }
+                fun spawner() { for (;;) spawn(spin); }
+                fun answer() { return 42; }
+                spawn(spin);
+                spawn(wait);
+                spawn(spawner);
+                print join(spawn(answer));
+                """));
+        assertTrue(captured.context.tasks.isEmpty());
+    }
+
+    // A task outlives its run only where the context keeps tasks, as the REPL's does. Otherwise a later run that joins
+    // it gets a runtime error rather than the interpreter's own signal to stop.
+    @ParameterizedTest
+    @EnumSource(value = LoxEngine.Backend.class, names = "VM", mode = EnumSource.Mode.EXCLUDE)
+    public void tasksAreJoinedInALaterRun(LoxEngine.Backend backend) {
+        Captured captured = new Captured(new LoxEngine(backend, false, null));
+        captured.run("var c = channel(1); fun task() { return receive(c); } var t = spawn(task);");
+        assertEquals("Task was stopped.\n[line 1]\n", captured.run("print join(t);"));
+        assertTrue(captured.context.reporter.hadRuntimeError);
+
+        Captured session = new Captured(new LoxEngine(backend, false, null));
+        session.context.keepTasks = true;
+        session.run("var c = channel(1); fun task() { return receive(c); } var t = spawn(task);");
+        assertEquals("", session.run("send(c, 42);"));
+        assertEquals("42\n", session.run("print join(t);"));
+        session.context.stopTasks();
+        assertTrue(session.context.tasks.isEmpty());
+    }
+
+    // The VM has channels but no tasks, and says so rather than leaving spawn undefined.
+    @Test
+    public void theVMRefusesToSpawn() {
+        Captured captured = new Captured(new LoxEngine(LoxEngine.Backend.VM, false, null));
+        assertEquals("spawn() is not supported by --vm.\n[line 2]\n", captured.run("""
+                fun task() {}
+                spawn(task);
+                """));
+        assertTrue(captured.context.reporter.hadRuntimeError);
+    }
+
+    // The natives are the first names an engine interns, so they must not be numbered like the built-in symbols.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void builtInSymbolsKeepTheirOwnGlobals(LoxEngine.Backend backend) {
+        Captured captured = new Captured(new LoxEngine(backend, false, null));
+        assertEquals("I am init\n<native fn>\n", captured.run("""
+                var init = "I am init";
+                print init;
+                print clock;
+                """));
+    }
+
+    // Each new engine starts from an empty table, so scripts run in fresh engines leave nothing behind.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void freshEnginesStartEmpty(LoxEngine.Backend backend) {
+        LoxEngine engine = new LoxEngine(backend, false, null);
+        new Captured(engine).run("var a = 1; var b = 2; var c = a + b;");
+        LoxEngine fresh = engine.fresh();
+        new Captured(fresh).run("print 1;");
+
+        assertTrue(fresh.symbols.count < engine.symbols.count);
+        assertEquals(engine.backend, fresh.backend);
+    }
+
+    // The VM's global operands are 16 bits, so it refuses more globals than that rather than wrapping around.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void manyGlobals(LoxEngine.Backend backend) {
+        StringBuilder source = new StringBuilder("var zero = \"zero\";\n");
+        for (int i = 1; i <= 70000; ++i) {
+            source.append("var g").append(i).append(" = ").append(i).append(";\n");
+        }
+        source.append("print zero;\nprint g70000;\n");
+
+        Captured captured = new Captured(new LoxEngine(backend, false, null));
+        String output = captured.run(source.toString());
+        if (backend == LoxEngine.Backend.VM) {
+            assertTrue(captured.context.reporter.hadError);
+            assertTrue(output.contains("Error: Too many global variables."), output);
+        } else {
+            assertFalse(captured.context.reporter.hadError);
+            assertEquals("zero\n70000\n", output);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class PreparedScriptTest {
+    public static PreparedScript prepare(LoxEngine.Backend backend, String source) {
+        PreparedScript script = new LoxEngine(backend, false, null).prepare(new Source(source), new Reporter(System.err));
+        assertNotNull(script);
+        return script;
+    }
+
+    // What the script printed, and the bindings and top-level definitions by name, with ropes as strings.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void resultsCarryOutputAndGlobals(LoxEngine.Backend backend) {
+        PreparedScript script = prepare(backend, """
+                print n;
+                var doubled = n * 2;
+                var name = "a" + "b";
+                fun unused() {}
+                """);
+
+        PreparedScript.Result result = script.execute(Map.of("n", 3));
+        assertFalse(result.hadRuntimeError());
+        assertEquals("3\n", result.output());
+        assertEquals("", result.errors());
+        assertEquals(6.0, result.globals().get("doubled"));
+        assertEquals("ab", result.globals().get("name"));
+        assertEquals(3.0, result.globals().get("n"));
+        assertTrue(result.globals().containsKey("unused"));
+    }
+
+    // One execution's bindings, definitions and assignments to natives are gone by the next, which reuses its context.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void executionsDoNotLeak(LoxEngine.Backend backend) {
+        PreparedScript script = prepare(backend, """
+                print clock;
+                clock = nil;
+                var total = n;
+                print total;
+                """);
+
+        PreparedScript.Result first = script.execute(Map.of("n", 1));
+        assertEquals("<native fn>\n1\n", first.output());
+        assertEquals(Map.of("total", 1.0, "n", 1.0), first.globals());
+
+        PreparedScript.Result second = script.execute(Map.of());
+        assertTrue(second.hadRuntimeError());
+        assertEquals("<native fn>\n", second.output());
+        assertEquals("Undefined variable 'n'.\n[line 3]\n", second.errors());
+        assertEquals(Map.of(), second.globals());
+        assertEquals(1, script.idle.size());
+    }
+
+    // A failed execution still reports what ran before the error, and its runner goes back to be used again.
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void runtimeErrorsReturnTheRunner(LoxEngine.Backend backend) {
+        PreparedScript script = prepare(backend, """
+                var before = 1;
+                print before;
+                print -"text";
+                var after = 2;
+                """);
+
+        PreparedScript.Result first = script.execute(Map.of());
+        assertTrue(first.hadRuntimeError());
+        assertEquals("1\n", first.output());
+        assertEquals("Operand must be a number.\n[line 3]\n", first.errors());
+        assertEquals(Map.of("before", 1.0), first.globals());
+        assertEquals(1, script.idle.size());
+
+        PreparedScript.Runner runner = script.idle.peek();
+        PreparedScript.Result second = script.execute(Map.of());
+        assertEquals(first, second);
+        assertSame(runner, script.idle.peek());
+        assertEquals(1, script.idle.size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(LoxEngine.Backend.class)
+    public void executionsRunAtOnce(LoxEngine.Backend backend) throws Exception {
+        PreparedScript script = prepare(backend, """
+                fun sum(n) {
+                    var total = 0;
+                    for (var i = 1; i <= n; i = i + 1) total = total + i;
+                    return total;
+                }
+                var result = sum(n);
+                print result;
+                """);
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PreparedScript.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 64; ++i) {
+                int n = i;
+                results.add(threads.submit(() -> script.execute(Map.of("n", n))));
+            }
+
+            for (int i = 0; i < results.size(); ++i) {
+                PreparedScript.Result result = results.get(i).get();
+                int sum = i * (i + 1) / 2;
+                assertFalse(result.hadRuntimeError());
+                assertEquals(sum + "\n", result.output());
+                assertEquals((double) sum, result.globals().get("result"));
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertTrue(script.idle.size() <= 8);
+    }
+}
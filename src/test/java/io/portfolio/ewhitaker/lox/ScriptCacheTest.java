@@ -0,0 +1,84 @@
+package io.portfolio.ewhitaker.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ScriptCacheTest {
+    @TempDir
+    public Path directory;
+
+    public static Source source() throws IOException, URISyntaxException {
+        return Source.map(GoldenTest.directory().resolve("classes.lox"));
+    }
+
+    public static List<Stmt> resolve(Source source, SymbolTable symbols) {
+        Reporter reporter = new Reporter(System.err);
+        List<Stmt> statements = new Parser(new Lexer(source, symbols, reporter).scanTokens(), reporter).parse();
+        new Resolver(symbols, reporter).resolve(statements);
+        assertTrue(!reporter.hadError);
+        return statements;
+    }
+
+    @Test
+    public void storedEntriesLoadBack() throws IOException, URISyntaxException {
+        ScriptCache cache = new ScriptCache(this.directory);
+        SymbolTable symbols = new SymbolTable();
+        Source source = source();
+        Path entry = cache.entry(source);
+        assertNull(cache.load(entry, source, symbols));
+
+        cache.store(entry, source, resolve(source, symbols));
+        assertNotNull(cache.load(entry, source, symbols));
+    }
+
+    @Test
+    public void corruptEntriesMiss() throws IOException, URISyntaxException {
+        ScriptCache cache = new ScriptCache(this.directory);
+        SymbolTable symbols = new SymbolTable();
+        Source source = source();
+        Path entry = cache.entry(source);
+        cache.store(entry, source, resolve(source, symbols));
+        byte[] bytes = Files.readAllBytes(entry);
+
+        bytes[bytes.length - 8] ^= 0x10;
+        Files.write(entry, bytes);
+        assertNull(cache.load(entry, source, symbols));
+
+        bytes[bytes.length - 8] ^= 0x10;
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(cache.load(entry, source, symbols));
+
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length + 1));
+        assertNull(cache.load(entry, source, symbols));
+    }
+
+    // A corrupt entry is reparsed and replaced, and every run prints the same as one without a cache.
+    @Test
+    public void enginesRunFromTheCache() throws IOException, URISyntaxException {
+        Path script = GoldenTest.directory().resolve("classes.lox");
+        for (LoxEngine.Backend backend : LoxEngine.Backend.values()) {
+            LoxEngine engine = new LoxEngine(backend, false, new ScriptCache(this.directory));
+            assertEquals(GoldenTest.expected(script), GoldenTest.run(engine, Source.map(script)));
+            assertEquals(GoldenTest.expected(script), GoldenTest.run(engine, Source.map(script)));
+
+            Path entry = engine.cache.entry(Source.map(script));
+            byte[] bytes = Files.readAllBytes(entry);
+            bytes[bytes.length / 2] ^= 0x55;
+            Files.write(entry, bytes);
+            assertEquals(GoldenTest.expected(script), GoldenTest.run(engine, Source.map(script)));
+            assertNotNull(engine.cache.load(entry, Source.map(script), engine.symbols));
+        }
+    }
+}